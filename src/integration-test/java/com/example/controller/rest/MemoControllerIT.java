@@ -1,11 +1,15 @@
 package com.example.controller.rest;
 
 import com.example.MemoBootApplication;
+import com.example.metrics.LatencyRegistry;
 import com.example.model.ErrorResponse;
 import com.example.model.Memo;
 import com.example.model.Pagination;
 import com.example.model.ServiceResponse;
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.reflect.TypeToken;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,12 +21,16 @@ import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.util.Date;
 import java.util.regex.Pattern;
 
 import static org.hamcrest.Matchers.containsString;
@@ -50,6 +58,12 @@ public class MemoControllerIT {
     @Autowired
     private WebApplicationContext context;
 
+    /**
+     * The Latency registry.
+     */
+    @Autowired
+    private LatencyRegistry latencyRegistry;
+
     /**
      * Mock MVC for Unit Testing
      */
@@ -73,6 +87,18 @@ public class MemoControllerIT {
         };
     }
 
+    /**
+     * Perform a request, following the async dispatch of the memo reads.
+     *
+     * @param request the request
+     *
+     * @return the result actions of the complete request
+     * @throws Exception the exception
+     */
+    private ResultActions perform(final RequestBuilder request) throws Exception {
+        return AsyncMvc.perform(mvc, request);
+    }
+
     /**
      * Set up the tests.
      */
@@ -91,7 +117,7 @@ public class MemoControllerIT {
     public void testCreateMemosHappy() throws Exception {
 
         // Test for JSON Happy Path
-        MvcResult mvcResult = mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        MvcResult mvcResult = perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -114,7 +140,7 @@ public class MemoControllerIT {
     public void testForXMLSupportOutPut() throws Exception {
 
         // Test for JSON Happy Path
-        MvcResult mvcResult = mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        MvcResult mvcResult = perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_XML)
                 .characterEncoding("UTF-8")
@@ -136,7 +162,7 @@ public class MemoControllerIT {
     @Test
     public void testCreateMemoWithBadData() throws Exception {
 
-        MvcResult mvcResult = mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        MvcResult mvcResult = perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -156,7 +182,7 @@ public class MemoControllerIT {
     public void testGetMemoByValidIdHappy() throws Exception {
         // Test for JSON Happy Path
         createNewTestMemo();
-        MvcResult mvcResult = mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        MvcResult mvcResult = perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -173,7 +199,7 @@ public class MemoControllerIT {
      */
     @Test
     public void testGetMemoByInvalidId() throws Exception {
-        MvcResult mvcResult = mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/123345")
+        MvcResult mvcResult = perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/123345")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
@@ -183,6 +209,93 @@ public class MemoControllerIT {
     }
 
 
+    /**
+     * Test get memos by id, in request order with the missing one reported.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemosById() throws Exception {
+        createNewTestMemo();
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.MGET)
+                .param("ids", "123345,1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":[{\"id\":123345,\"memo\":null," +
+                        "\"error\":{\"code\":\"404\"}},{\"id\":1," +
+                        "\"memo\":{\"title\":\"some title\"},\"error\":null}]}"));
+
+        perform(post(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.MGET)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("[1]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"author\":\"an author\"")));
+    }
+
+    /**
+     * Test Delete memos in bulk.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDeleteMemos() throws Exception {
+        createNewTestMemo();
+        perform(delete(MemoController.V1_PREFIX + MemoController.MEMO)
+                .param("ids", "1,123345")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":1}"));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+
+    /**
+     * Test Get memo statistics, counting a create once the change feed is
+     * refreshed.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetStats() throws Exception {
+        createNewTestMemo();
+        ReflectionTestUtils.invokeMethod(context.getBean("memoStatistics"), "refresh");
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.STATS)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":{\"total\":1,"
+                        + "\"authors\":{\"an author\":1}}}"));
+    }
+
+
+    /**
+     * Test the latency of the handlers on the latency endpoint.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testLatencyEndpoint() throws Exception {
+        createNewTestMemo();
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/122334")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+
+        latencyRegistry.roll();
+
+        perform(get("/latency").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"MemoController.getMemo\":{\"count\":2")))
+                .andExpect(content().string(containsString("\"statuses\":{\"200\":1,\"404\":1}")))
+                .andExpect(content().string(containsString("\"DAOClient.getMemo\"")));
+    }
+
     /**
      * Test update memos happy.
      *
@@ -194,7 +307,7 @@ public class MemoControllerIT {
         createNewTestMemo();
 
         // Update the Resource
-        mvc.perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
 
@@ -205,7 +318,7 @@ public class MemoControllerIT {
                 .andExpect(status().isNoContent());
 
         // Now Test either its been updated or not.
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -223,7 +336,7 @@ public class MemoControllerIT {
     public void testUpdateMemosBadPath() throws Exception {
 
         // Update the Resource with invalid memo id.
-        mvc.perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/122334")
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/122334")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
 
@@ -237,6 +350,40 @@ public class MemoControllerIT {
     }
 
 
+    /**
+     * Test update memos with an outdated version.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testUpdateMemosConflict() throws Exception {
+
+        createNewTestMemo();
+
+        String update = "{\"title\":\"updated title\"," +
+                "\"version\":0," +
+                "\"text\":\"updated text\"," +
+                "\"author\":\"updated author\"}";
+
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8")
+                .content(update))
+                .andExpect(status().isNoContent());
+
+        // The same version again is outdated now.
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8")
+                .content(update))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(containsString("The entry was changed by another request"))).andReturn();
+
+    }
+
+
     /**
      * Test update memos bad data.
      *
@@ -249,7 +396,7 @@ public class MemoControllerIT {
         createNewTestMemo();
 
         // Update the Resource with invalid memo id.
-        mvc.perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
 
@@ -276,14 +423,22 @@ public class MemoControllerIT {
             createNewTestMemo();
         }
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().string(containsString("\"id\":1")))
-                .andExpect(content().string(containsString("\"totalRecords\":20")))
+                .andExpect(content().string(containsString("\"totalRecords\":null")))
                 .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=1&limit=10\"")))
                 .andReturn();
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?includeTotal=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"totalRecords\":20")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=1&limit=10&includeTotal=true\"")))
+                .andReturn();
     }
 
 
@@ -300,24 +455,24 @@ public class MemoControllerIT {
             createNewTestMemo();
         }
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=0&limit=10")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=0&limit=10&includeTotal=true")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().string(containsString("\"id\":1")))
                 .andExpect(content().string(containsString("\"totalRecords\":20")))
                 .andExpect(content().string(containsString("\"prev\":null")))
-                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=1&limit=10\"")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=1&limit=10&includeTotal=true\"")))
                 .andReturn();
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=1&limit=10")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=1&limit=10&includeTotal=true")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andExpect(content().string(containsString("\"id\":11")))
                 .andExpect(content().string(containsString("\"totalRecords\":20")))
                 .andExpect(content().string(containsString("\"next\":null")))
-                .andExpect(content().string(containsString("\"prev\":\"http://localhost/data/1/memo?page=0&limit=10\"")))
+                .andExpect(content().string(containsString("\"prev\":\"http://localhost/data/1/memo?page=0&limit=10&includeTotal=true\"")))
                 .andReturn();
     }
 
@@ -331,7 +486,7 @@ public class MemoControllerIT {
     public void testGetAllMemoBadWithPagination() throws Exception {
 
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
@@ -343,19 +498,37 @@ public class MemoControllerIT {
             createNewTestMemo();
         }
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=-1&limit=10")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=-1&limit=10")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string(containsString("Page number should be equals or greater than 0")));
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=1&limit=-10")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=1&limit=-10")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isBadRequest())
                 .andExpect(content().string(containsString("Limit number should be equals or greater than 1")));
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=5&limit=10")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=0&limit=1001")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Limit number should be at most 1000")));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.SEARCH
+                + "?q=title&page=" + Integer.MAX_VALUE + "&limit=1000")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Page number is too large for the limit")));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.SEARCH
+                + "?q=title&page=0&limit=" + Integer.MAX_VALUE)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Limit number should be at most 1000")));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=5&limit=10")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
@@ -364,6 +537,46 @@ public class MemoControllerIT {
     }
 
 
+    /**
+     * Test Get memos as a list with keyset cursor params.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetAllMemoWithCursor() throws Exception {
+
+        // Create 20 Memos into the system.
+        for (int i = 0; i < 20; i++) {
+            createNewTestMemo();
+        }
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?after=&limit=10")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"id\":1")))
+                .andExpect(content().string(containsString("\"totalRecords\":null")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?after="
+                        + MemoCursor.encode(10L) + "&limit=10\"")))
+                .andReturn();
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?after="
+                + MemoCursor.encode(10L) + "&limit=10")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"id\":11")))
+                .andExpect(content().string(containsString("\"next\":null")))
+                .andReturn();
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?after=not-a-cursor")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("Invalid pagination cursor")));
+    }
+
+
     /**
      * Test Delete memo.
      *
@@ -375,13 +588,13 @@ public class MemoControllerIT {
         // Create 20 Memos into the system.
         createNewTestMemo();
 
-        mvc.perform(delete(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(delete(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
 
         // Test either its been deleted or not.
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound());
@@ -396,7 +609,7 @@ public class MemoControllerIT {
     public void testDeleteMemoBadPath() throws Exception {
 
         // Try to delete invalid resource
-        mvc.perform(delete(MemoController.V1_PREFIX + MemoController.MEMO + "/1233345")
+        perform(delete(MemoController.V1_PREFIX + MemoController.MEMO + "/1233345")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNotFound())
@@ -410,7 +623,7 @@ public class MemoControllerIT {
      */
     private void createNewTestMemo() throws Exception {
 
-        MvcResult mvcResult = mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        MvcResult mvcResult = perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -422,9 +635,12 @@ public class MemoControllerIT {
                 .andExpect(locationPattern("http://.*/1/memo/.*")).andReturn();
 
         String response = mvcResult.getResponse().getContentAsString();
-        Gson gson = new Gson();
+        Gson gson = new GsonBuilder().registerTypeAdapter(Date.class,
+                (JsonDeserializer<Date>) (json, type, context) -> new Date(json.getAsLong()))
+                .create();
 
-        ServiceResponse<Memo, Pagination, ErrorResponse> createdMemo = gson.fromJson(response, ServiceResponse.class);
+        ServiceResponse<Memo, Pagination, ErrorResponse> createdMemo = gson.fromJson(response,
+                new TypeToken<ServiceResponse<Memo, Pagination, ErrorResponse>>() { }.getType());
         assertNotNull(createdMemo);
         assertNotNull(createdMemo.getResult());
 
@@ -0,0 +1,168 @@
+package com.example.benchmark;
+
+import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import com.example.model.MemoPage;
+import com.example.model.MemoVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the DAO client against the embedded H2 database. They measure
+ * the persistence layer alone: JPA, the memo cache and the counter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DAOClientBenchmark {
+
+    /**
+     * The number of memos per bulk create.
+     */
+    private static final int BULK_SIZE = 50;
+
+    /**
+     * The threads of the database executor, memo.async.pool-size.
+     */
+    private static final int DB_THREADS = 20;
+
+
+    /**
+     * The memos of a bulk create.
+     */
+    private List<Memo> bulk;
+
+    /**
+     * Prepare the memos of a bulk create.
+     */
+    @Setup
+    public void prepare() {
+        bulk = new ArrayList<>();
+        for (int i = 0; i < BULK_SIZE; i++) {
+            bulk.add(MemoApplicationState.newMemo(i, "Some bulk text " + i));
+        }
+    }
+
+    /**
+     * Get a memo by id, mostly from the memo cache.
+     *
+     * @param app the application
+     * @return the memo
+     */
+    @Benchmark
+    public Memo getMemo(final MemoApplicationState app) {
+        return app.getDaoClient().getMemo(app.randomId());
+    }
+
+    /**
+     * Get the version of a memo by id.
+     *
+     * @param app the application
+     * @return the version
+     */
+    @Benchmark
+    public MemoVersion getMemoVersion(final MemoApplicationState app) {
+        return app.getDaoClient().getMemoVersion(app.randomId());
+    }
+
+    /**
+     * Get the version of a memo by id from as many threads as the database
+     * executor runs, each read borrowing a pooled connection. The borrow waits
+     * are published as memo.pool.wait and the exhausted borrows as memo.pool.queued.
+     *
+     * @param app the application
+     * @return the version
+     */
+    @Benchmark
+    @Threads(DB_THREADS)
+    public MemoVersion getMemoVersionConcurrently(final MemoApplicationState app) {
+        return app.getDaoClient().getMemoVersion(app.randomId());
+    }
+
+    /**
+     * Get a random page of memos by page number, without the total.
+     *
+     * @param app the application
+     * @param pageSize the page size
+     * @return the page
+     */
+    @Benchmark
+    public MemoPage getMemosForPage(final MemoApplicationState app,
+            final PageSize pageSize) {
+        int number = ThreadLocalRandom.current()
+                .nextInt(MemoApplicationState.MEMOS / pageSize.limit);
+        return app.getDaoClient().getMemosForPage(number, pageSize.limit, false);
+    }
+
+    /**
+     * Get a random page of memos by keyset, starting at a seeded memo so the page
+     * is never empty.
+     *
+     * @param app the application
+     * @param pageSize the page size
+     * @return the page
+     */
+    @Benchmark
+    public MemoPage getMemosAfter(final MemoApplicationState app,
+            final PageSize pageSize) {
+        return app.getDaoClient().getMemosAfter(app.randomId() - 1, pageSize.limit);
+    }
+
+    /**
+     * Create one memo.
+     *
+     * @param app the application
+     * @return the memo
+     */
+    @Benchmark
+    public Memo createMemo(final MemoApplicationState app) {
+        return app.getDaoClient().createMemo(
+                MemoApplicationState.newMemo(0, "Some new text"));
+    }
+
+    /**
+     * Create memos in bulk.
+     *
+     * @param app the application
+     * @return the created memos
+     */
+    @Benchmark
+    public List<MemoBulkItem> createMemos(final MemoApplicationState app) {
+        List<Memo> memos = new ArrayList<>();
+        for (Memo memo : bulk) {
+            memos.add(MemoApplicationState.newMemo(0, memo.getText()));
+        }
+        return app.getDaoClient().createMemos(memos);
+    }
+
+    /**
+     * The page size of the listing benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class PageSize {
+
+        /**
+         * The page size.
+         */
+        @Param({"10", "100"})
+        private int limit;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.benchmark;
+
+import com.example.MemoBootApplication;
+import com.example.api.client.DAOClient;
+import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The Memo application started once per benchmark trial with the test profile,
+ * so the memos are kept in the embedded H2 database, and seeded with memos.
+ */
+@State(Scope.Benchmark)
+public class MemoApplicationState {
+
+    /**
+     * The number of memos seeded.
+     */
+    public static final int MEMOS = 1000;
+
+    /**
+     * The application context.
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * The Dao client.
+     */
+    private DAOClient daoClient;
+
+    /**
+     * The Mock MVC over the whole web application context.
+     */
+    private MockMvc mvc;
+
+    /**
+     * The ids of the seeded memos.
+     */
+    private long[] ids;
+
+    /**
+     * Start the application and seed the memos.
+     */
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(MemoBootApplication.class)
+                .profiles("test")
+                .properties("server.port=0",
+                        "logging.level.org.springframework=WARN",
+                        "logging.level.org.hibernate=WARN")
+                .run();
+        daoClient = context.getBean(DAOClient.class);
+        mvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        List<Memo> memos = new ArrayList<>();
+        for (int i = 0; i < MEMOS; i++) {
+            memos.add(newMemo(i, "Some text " + i));
+        }
+        List<MemoBulkItem> items = daoClient.createMemos(memos);
+        ids = new long[items.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = items.get(i).getId();
+        }
+    }
+
+    /**
+     * Stop the application.
+     */
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    /**
+     * Build a memo.
+     *
+     * @param index the index used in the title and author
+     * @param text the text
+     * @return the memo
+     */
+    public static Memo newMemo(final int index, final String text) {
+        Memo memo = new Memo();
+        memo.setTitle("Some title " + index);
+        memo.setAuthor("Some author " + index);
+        memo.setText(text);
+        return memo;
+    }
+
+    /**
+     * Gets a random seeded memo id.
+     *
+     * @return the id
+     */
+    public long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+
+    /**
+     * Gets the Dao client.
+     *
+     * @return the Dao client
+     */
+    public DAOClient getDaoClient() {
+        return daoClient;
+    }
+
+    /**
+     * Gets the Mock MVC.
+     *
+     * @return the Mock MVC
+     */
+    public MockMvc getMvc() {
+        return mvc;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.benchmark;
+
+import com.example.controller.rest.MemoController;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Benchmarks of the memo read endpoints through the whole Spring MVC stack, from
+ * request mapping to message conversion, without the network.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoControllerBenchmark {
+
+    /**
+     * The memo URI.
+     */
+    private static final String URI = MemoController.V1_PREFIX + MemoController.MEMO;
+
+
+    /**
+     * Get a memo by id.
+     *
+     * @param app the application
+     * @return the result
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public MvcResult getMemo(final MemoApplicationState app) throws Exception {
+        return perform(app, get(URI + "/" + app.randomId())
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Get a memo by id as XML.
+     *
+     * @param app the application
+     * @return the result
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public MvcResult getMemoXml(final MemoApplicationState app) throws Exception {
+        return perform(app, get(URI + "/" + app.randomId())
+                .accept(MediaType.APPLICATION_XML));
+    }
+
+    /**
+     * Get a memo that does not exist, answered with 404, as scanners probing
+     * random ids do.
+     *
+     * @param app the application
+     * @return the result
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public MvcResult getMissingMemo(final MemoApplicationState app) throws Exception {
+        return perform(app, get(URI + "/" + (app.randomId() + Integer.MAX_VALUE))
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Get an unchanged memo by id with its ETag, answered with 304.
+     *
+     * @param app the application
+     * @return the result
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public MvcResult getMemoNotModified(final MemoApplicationState app) throws Exception {
+        long id = app.randomId();
+        return perform(app, get(URI + "/" + id)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("If-None-Match", "\"" + id + "-0\""));
+    }
+
+    /**
+     * Get a random page of memos by page number.
+     *
+     * @param app the application
+     * @param pageSize the page size
+     * @return the result
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public MvcResult getMemos(final MemoApplicationState app,
+            final PageSize pageSize) throws Exception {
+        int number = ThreadLocalRandom.current()
+                .nextInt(MemoApplicationState.MEMOS / pageSize.limit);
+        return perform(app, get(URI + "?page=" + number
+                + "&limit=" + pageSize.limit)
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Get a random page of memos by keyset, starting at a seeded memo so the page
+     * is never empty.
+     *
+     * @param app the application
+     * @param pageSize the page size
+     * @return the result
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public MvcResult getMemosAfter(final MemoApplicationState app,
+            final PageSize pageSize) throws Exception {
+        // Same encoding as the cursors handed out in the next links.
+        String after = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                Long.toString(app.randomId() - 1).getBytes(StandardCharsets.US_ASCII));
+        return perform(app, get(URI + "?after=" + after
+                + "&limit=" + pageSize.limit)
+                .accept(MediaType.APPLICATION_JSON));
+    }
+
+    /**
+     * Perform a request, following the async dispatch of the memo reads.
+     *
+     * @param app the application
+     * @param request the request
+     * @return the result of the complete request
+     * @throws Exception the exception
+     */
+    private static MvcResult perform(final MemoApplicationState app,
+            final RequestBuilder request) throws Exception {
+        MvcResult result = app.getMvc().perform(request).andReturn();
+        if (result.getRequest().getAsyncContext() == null) {
+            return result;
+        }
+        result.getAsyncResult();
+        return app.getMvc().perform(asyncDispatch(result)).andReturn();
+    }
+
+    /**
+     * The page size of the listing benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class PageSize {
+
+        /**
+         * The page size.
+         */
+        @Param({"10", "100"})
+        private int limit;
+    }
+}
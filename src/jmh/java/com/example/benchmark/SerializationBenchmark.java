@@ -0,0 +1,107 @@
+package com.example.benchmark;
+
+import com.example.model.Memo;
+import com.example.model.Pagination;
+import com.example.model.ServiceResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the JSON and XML serialization of a listing response, with the
+ * mappers configured like the ones of the Spring MVC message converters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /**
+     * The number of memos of the response.
+     */
+    @Param({"10", "100"})
+    private int memos;
+
+    /**
+     * The length of the text of each memo.
+     */
+    @Param({"64", "1024", "16384"})
+    private int textSize;
+
+    /**
+     * The JSON mapper.
+     */
+    private ObjectMapper json;
+
+    /**
+     * The XML mapper.
+     */
+    private ObjectMapper xml;
+
+    /**
+     * The response to serialize.
+     */
+    private ServiceResponse<Memo[], Pagination, String> response;
+
+    /**
+     * Build the mappers and the response.
+     */
+    @Setup
+    public void prepare() {
+        json = Jackson2ObjectMapperBuilder.json().build();
+        xml = Jackson2ObjectMapperBuilder.xml().build();
+
+        String text = Strings.repeat("x", textSize);
+        Memo[] memoArray = new Memo[memos];
+        for (int i = 0; i < memos; i++) {
+            Memo memo = MemoApplicationState.newMemo(i, text);
+            memo.setId((long) i + 1);
+            memo.setVersion(0L);
+            memo.setCreated(new Date());
+            memo.setUpdated(memo.getCreated());
+            memoArray[i] = memo;
+        }
+        response = new ServiceResponse<>(memoArray,
+                new Pagination(null, null, "http://localhost/api/data/1/memo?page=1"),
+                null);
+    }
+
+    /**
+     * Write the response as JSON.
+     *
+     * @return the bytes
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public byte[] writeJson() throws Exception {
+        return json.writeValueAsBytes(response);
+    }
+
+    /**
+     * Write the response as XML.
+     *
+     * @return the bytes
+     * @throws Exception the exception
+     */
+    @Benchmark
+    public byte[] writeXml() throws Exception {
+        return xml.writeValueAsBytes(response);
+    }
+}
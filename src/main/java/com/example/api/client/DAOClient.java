@@ -1,10 +1,17 @@
 package com.example.api.client;
 
 import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import com.example.model.MemoChange;
+import com.example.model.MemoFilter;
+import com.example.model.MemoGetItem;
 import com.example.model.MemoPage;
+import com.example.model.MemoStats;
+import com.example.model.MemoVersion;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Persistent client for memos storage.
@@ -19,6 +26,15 @@ public interface DAOClient {
      */
     Memo createMemo(Memo request);
 
+    /**
+     * Create many memos in one transaction. Each memo is validated on its own,
+     * rejected memos are reported and do not prevent the others from being created.
+     *
+     * @param requests the requests
+     * @return the outcome of each memo, in request order
+     */
+    List<MemoBulkItem> createMemos(List<Memo> requests);
+
     /**
      * Delete a memo given its identifier.
      *
@@ -27,6 +43,25 @@ public interface DAOClient {
      */
     boolean deleteMemo(Long id);
 
+    /**
+     * Delete the memos of the given identifiers, with one UPDATE statement per
+     * batch of identifiers. Missing memos are skipped.
+     *
+     * @param ids Memo identifiers
+     * @return the number of memos deleted
+     */
+    int deleteMemos(List<Long> ids);
+
+    /**
+     * Delete the memos matching a filter, by batches of identifiers in id order,
+     * each batch with one UPDATE statement in its own transaction.
+     *
+     * @param filter the filter, by author or time; the order and the fields are
+     * ignored
+     * @return the number of memos deleted
+     */
+    int deleteMemos(MemoFilter filter);
+
     /**
      * Retrieve a memo given its identifier.
      *
@@ -35,6 +70,25 @@ public interface DAOClient {
      */
     Memo getMemo(Long id);
 
+    /**
+     * Retrieve many memos given their identifiers. Cached memos are taken from the
+     * cache and the others read with one query per chunk of identifiers; missing
+     * memos are reported one by one instead of failing the whole request.
+     *
+     * @param ids Memo identifiers
+     * @return the memo or the error of each identifier, in request order
+     */
+    List<MemoGetItem> getMemos(List<Long> ids);
+
+    /**
+     * Retrieve the version of a memo given its identifier, to validate a copy held
+     * by a client without reading the whole memo.
+     *
+     * @param id Memo identifier
+     * @return version of the memo requested
+     */
+    MemoVersion getMemoVersion(Long id);
+
     /**
      * Check if there is a memo with the given identifier.
      *
@@ -53,7 +107,30 @@ public interface DAOClient {
     List<Memo> getAllMemos(int pageNo, int limit);
 
     /**
-     * Gets memos with pagination.
+     * Hand every memo, in id order, to a consumer. The memos are read from a
+     * database cursor and are not kept, so memory use does not depend on the
+     * number of memos.
+     *
+     * @param consumer the consumer of the memos
+     */
+    void streamMemos(Consumer<Memo> consumer);
+
+    /**
+     * Gets the changes of the memos after a position of the change feed, in feed
+     * order. Each write moves its memo to the end of the feed, so a memo is listed
+     * once, as of its last write; deleted memos are listed as tombstones.
+     *
+     * @param sinceChangeSeq the position of the last change seen, 0 for the start
+     * @param sinceId the memo id of the last change seen, 0 for the start
+     * @param limit the limit
+     * @param includeDeleted whether to list the deleted memos
+     * @return the changes, empty when there are no more
+     */
+    List<MemoChange> getChanges(long sinceChangeSeq, long sinceId, int limit,
+                                boolean includeDeleted);
+
+    /**
+     * Gets memos with pagination, including the totals.
      *
      * @param pageNo the page no
      * @param limit the limit
@@ -61,6 +138,59 @@ public interface DAOClient {
      */
     MemoPage getMemosForPage(int pageNo, int limit);
 
+    /**
+     * Gets memos with pagination.
+     *
+     * @param pageNo the page no
+     * @param limit the limit
+     * @param includeTotal whether to fill the total memos and pages
+     * @return the memos for page
+     */
+    MemoPage getMemosForPage(int pageNo, int limit, boolean includeTotal);
+
+    /**
+     * Gets the memos matching a filter with pagination, in the order of the filter.
+     *
+     * @param pageNo the page no
+     * @param limit the limit
+     * @param includeTotal whether to fill the total memos and pages
+     * @param filter the filter and order
+     * @return the memos for page
+     */
+    MemoPage getMemosForPage(int pageNo, int limit, boolean includeTotal,
+                             MemoFilter filter);
+
+    /**
+     * Gets memos following the given memo identifier (keyset pagination).
+     *
+     * @param afterId the memo identifier to continue after, 0 for the first page
+     * @param limit the limit
+     * @return the memos for page
+     */
+    MemoPage getMemosAfter(long afterId, int limit);
+
+    /**
+     * Gets the memos matching a filter following the given memo identifier (keyset
+     * pagination). The memos come in id order, the filter must not set another.
+     *
+     * @param afterId the memo identifier to continue after, 0 for the first page
+     * @param limit the limit
+     * @param filter the filter
+     * @return the memos for page
+     */
+    MemoPage getMemosAfter(long afterId, int limit, MemoFilter filter);
+
+    /**
+     * Search memos by the words of their title, author and text, best match first.
+     * Every word of the query has to be found.
+     *
+     * @param query the words to look for
+     * @param pageNo the page no
+     * @param limit the limit
+     * @return the memos for page, without totals
+     */
+    MemoPage searchMemos(String query, int pageNo, int limit);
+
     /**
      * Gets count.
      *
@@ -68,9 +198,18 @@ public interface DAOClient {
      */
     Integer getCount();
 
+    /**
+     * Gets the statistics of the memos, from memory.
+     *
+     * @return the statistics
+     */
+    MemoStats getStats();
+
     /**
      * Update all fields of a memo given a Memo object. memo.id will be used to look up
-     * for it on the persistent storage unit.
+     * for it on the persistent storage unit. When memo.version is set the update
+     * only applies to that version of the memo, a ConflictException is thrown
+     * otherwise.
      *
      * @param memo Model object with all fields to be updated
      * @return the boolean
@@ -78,7 +217,9 @@ public interface DAOClient {
     boolean updateMemo(final Memo memo);
 
     /**
-     * Update given fields from memo given its identifier and fields to update.
+     * Update given fields from memo given its identifier and fields to update. A
+     * field set to null is removed, which the memo constraints reject. A version
+     * field makes the patch conditional, like in {@link #updateMemo(Memo)}.
      *
      * @param id Memo identifier
      * @param fields Map with fields and new values
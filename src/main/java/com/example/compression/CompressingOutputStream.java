@@ -0,0 +1,288 @@
+package com.example.compression;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Body of a compressing response. The first bytes are buffered up to the minimum
+ * size; a body that stays below is written as it is, a larger one is compressed
+ * from there on as it is written. Compressed data is sync flushed, so flushing a
+ * streamed response still reaches the client.
+ */
+class CompressingOutputStream extends ServletOutputStream {
+
+    /**
+     * Size of the compressor buffer, the default buffer of the container.
+     */
+    private static final int COMPRESSOR_BUFFER_SIZE = 8192;
+
+    /**
+     * The response.
+     */
+    private final CompressingResponse response;
+
+    /**
+     * The stream of the container.
+     */
+    private final ServletOutputStream raw;
+
+    /**
+     * The bytes written before the decision, sized to the minimum size.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The number of bytes buffered.
+     */
+    private int count;
+
+    /**
+     * Where the body goes once decided, null before.
+     */
+    private OutputStream out;
+
+    /**
+     * The bytes written to the container, when compressing.
+     */
+    private Counter counter;
+
+    /**
+     * The bytes written by the application, when compressing.
+     */
+    private long written;
+
+    /**
+     * Whether the body is complete.
+     */
+    private boolean finished;
+
+    /**
+     * Instantiates a new Compressing output stream.
+     *
+     * @param compressing the response
+     * @param container   the stream of the container
+     * @param minSize     the minimum size compressed
+     */
+    CompressingOutputStream(final CompressingResponse compressing,
+                            final ServletOutputStream container, final int minSize) {
+        this.response = compressing;
+        this.raw = container;
+        this.buffer = new byte[minSize];
+    }
+
+    /**
+     * Write a byte.
+     *
+     * @param b the byte
+     * @throws IOException the io exception
+     */
+    @Override
+    public void write(final int b) throws IOException {
+        if (out == null && count < buffer.length) {
+            buffer[count++] = (byte) b;
+            return;
+        }
+        if (out == null) {
+            decide(true);
+        }
+        out.write(b);
+        written++;
+    }
+
+    /**
+     * Write bytes.
+     *
+     * @param b   the bytes
+     * @param off the offset
+     * @param len the length
+     * @throws IOException the io exception
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (out == null && count + len <= buffer.length) {
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+            return;
+        }
+        if (out == null) {
+            decide(true);
+        }
+        out.write(b, off, len);
+        written += len;
+    }
+
+    /**
+     * Flush. A body not decided yet is complete as far as the application knows,
+     * so it is sent as it is when below the minimum size.
+     *
+     * @throws IOException the io exception
+     */
+    @Override
+    public void flush() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (out == null) {
+            decide(false);
+        }
+        out.flush();
+    }
+
+    /**
+     * Close, which completes the body.
+     *
+     * @throws IOException the io exception
+     */
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+
+    /**
+     * Write what is left of the body and end the compression.
+     *
+     * @throws IOException the io exception
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        if (out == null) {
+            decide(false);
+        }
+        finished = true;
+        out.close();
+        if (counter != null) {
+            response.record(written, counter.count);
+        }
+    }
+
+    /**
+     * Drop the bytes buffered, after a reset of the response.
+     */
+    void discard() {
+        if (out != null) {
+            throw new IllegalStateException("The response body is already written.");
+        }
+        count = 0;
+    }
+
+    /**
+     * Whether the container accepts writes without blocking.
+     *
+     * @return true when ready
+     */
+    @Override
+    public boolean isReady() {
+        return raw.isReady();
+    }
+
+    /**
+     * Set the listener of non blocking writes.
+     *
+     * @param writeListener the listener
+     */
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+        raw.setWriteListener(writeListener);
+    }
+
+    /**
+     * Decide how the body is sent and write the bytes buffered so far.
+     *
+     * @param large whether the body exceeds the minimum size
+     * @throws IOException the io exception
+     */
+    private void decide(final boolean large) throws IOException {
+        String coding = response.commit(large);
+        if (coding == null) {
+            out = new Counter(raw);
+        } else {
+            counter = new Counter(raw);
+            if (CompressionFilter.GZIP.equals(coding)) {
+                out = new GZIPOutputStream(counter, COMPRESSOR_BUFFER_SIZE, true);
+            } else {
+                out = new DeflaterOutputStream(counter, true);
+            }
+            written = count;
+        }
+        out.write(buffer, 0, count);
+    }
+
+    /**
+     * Stream of the container that counts the bytes written and is left open, the
+     * container closes it.
+     */
+    private static final class Counter extends OutputStream {
+
+        /**
+         * The stream of the container.
+         */
+        private final OutputStream target;
+
+        /**
+         * The bytes written.
+         */
+        private long count;
+
+        /**
+         * Instantiates a new Counter.
+         *
+         * @param container the stream of the container
+         */
+        private Counter(final OutputStream container) {
+            this.target = container;
+        }
+
+        /**
+         * Write a byte.
+         *
+         * @param b the byte
+         * @throws IOException the io exception
+         */
+        @Override
+        public void write(final int b) throws IOException {
+            target.write(b);
+            count++;
+        }
+
+        /**
+         * Write bytes.
+         *
+         * @param b   the bytes
+         * @param off the offset
+         * @param len the length
+         * @throws IOException the io exception
+         */
+        @Override
+        public void write(final byte[] b, final int off, final int len)
+                throws IOException {
+            target.write(b, off, len);
+            count += len;
+        }
+
+        /**
+         * Flush.
+         *
+         * @throws IOException the io exception
+         */
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        /**
+         * Flush, the container closes its stream.
+         *
+         * @throws IOException the io exception
+         */
+        @Override
+        public void close() throws IOException {
+            target.flush();
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.example.compression;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Response whose body goes through a {@link CompressingOutputStream}. The content
+ * length set by the application is held back, it only applies when the body is
+ * sent uncompressed. An encoded body is not byte for byte the representation the
+ * application tagged, so its ETag is sent weak.
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+
+    /**
+     * The content coding negotiated.
+     */
+    private final String coding;
+
+    /**
+     * Bodies shorter than this are sent as they are.
+     */
+    private final int minSize;
+
+    /**
+     * The media types compressed.
+     */
+    private final List<String> mimeTypes;
+
+    /**
+     * The filter, recording the bytes saved.
+     */
+    private final CompressionFilter filter;
+
+    /**
+     * The body, created on first use.
+     */
+    private CompressingOutputStream stream;
+
+    /**
+     * The writer over the body, when the application asked for one.
+     */
+    private PrintWriter writer;
+
+    /**
+     * The content length set by the application, -1 when unknown.
+     */
+    private long contentLength = -1L;
+
+    /**
+     * Whether an error was sent, the container then writes the body itself.
+     */
+    private boolean bypassed;
+
+    /**
+     * Whether the body is sent encoded.
+     */
+    private boolean encoded;
+
+    /**
+     * Instantiates a new Compressing response.
+     *
+     * @param response    the response
+     * @param encoding    the content coding
+     * @param threshold   the minimum size compressed
+     * @param types       the media types compressed
+     * @param compression the filter
+     */
+    CompressingResponse(final HttpServletResponse response, final String encoding,
+                        final int threshold, final List<String> types,
+                        final CompressionFilter compression) {
+        super(response);
+        this.coding = encoding;
+        this.minSize = threshold;
+        this.mimeTypes = types;
+        this.filter = compression;
+    }
+
+    /**
+     * Gets the compressing output stream.
+     *
+     * @return the stream
+     * @throws IOException the io exception
+     */
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (bypassed) {
+            return super.getOutputStream();
+        }
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called.");
+        }
+        return stream();
+    }
+
+    /**
+     * Gets a writer over the compressing output stream.
+     *
+     * @return the writer
+     * @throws IOException the io exception
+     */
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (bypassed) {
+            return super.getWriter();
+        }
+        if (writer == null) {
+            if (stream != null) {
+                throw new IllegalStateException(
+                        "getOutputStream() has already been called.");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(stream(),
+                    getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    /**
+     * Hold the content length back.
+     *
+     * @param len the length
+     */
+    @Override
+    public void setContentLength(final int len) {
+        contentLength = len;
+    }
+
+    /**
+     * Hold the content length back.
+     *
+     * @param len the length
+     */
+    @Override
+    public void setContentLengthLong(final long len) {
+        contentLength = len;
+    }
+
+    /**
+     * Set a header, holding the content length back and weakening the ETag of an
+     * encoded body.
+     *
+     * @param name  the name
+     * @param value the value
+     */
+    @Override
+    public void setHeader(final String name, final String value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            contentLength = Long.parseLong(value);
+        } else if (encoded && HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+            super.setHeader(name, weak(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    /**
+     * Add a header, holding the content length back and weakening the ETag of an
+     * encoded body.
+     *
+     * @param name  the name
+     * @param value the value
+     */
+    @Override
+    public void addHeader(final String name, final String value) {
+        if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            contentLength = Long.parseLong(value);
+        } else if (encoded && HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+            super.addHeader(name, weak(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    /**
+     * Send an error, which the container writes without compression.
+     *
+     * @param sc  the status
+     * @param msg the message
+     * @throws IOException the io exception
+     */
+    @Override
+    public void sendError(final int sc, final String msg) throws IOException {
+        bypassed = true;
+        super.sendError(sc, msg);
+    }
+
+    /**
+     * Send an error, which the container writes without compression.
+     *
+     * @param sc the status
+     * @throws IOException the io exception
+     */
+    @Override
+    public void sendError(final int sc) throws IOException {
+        bypassed = true;
+        super.sendError(sc);
+    }
+
+    /**
+     * Flush the body written so far.
+     *
+     * @throws IOException the io exception
+     */
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.flush();
+        }
+        super.flushBuffer();
+    }
+
+    /**
+     * Drop the body buffered so far, along with the headers.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        discard();
+    }
+
+    /**
+     * Drop the body buffered so far.
+     */
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        discard();
+    }
+
+    /**
+     * Write what is left of the body and end the compression.
+     *
+     * @throws IOException the io exception
+     */
+    void finish() throws IOException {
+        if (bypassed) {
+            return;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        if (stream != null) {
+            stream.finish();
+        } else if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+    }
+
+    /**
+     * Decide how the body is sent, when it is either complete or known to exceed
+     * the minimum size. The headers are set accordingly, an encoded body gets the
+     * weak form of its ETag.
+     *
+     * @param large whether the body exceeds the minimum size
+     * @return the content coding, null when the body is sent as it is
+     */
+    String commit(final boolean large) {
+        boolean eligible = isCompressible();
+        if (eligible) {
+            super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (eligible && large) {
+            encoded = true;
+            super.setHeader(HttpHeaders.CONTENT_ENCODING, coding);
+            String etag = getHeader(HttpHeaders.ETAG);
+            if (etag != null) {
+                super.setHeader(HttpHeaders.ETAG, weak(etag));
+            }
+            return coding;
+        }
+        if (contentLength >= 0) {
+            super.setContentLengthLong(contentLength);
+        }
+        return null;
+    }
+
+    /**
+     * Record a compressed body.
+     *
+     * @param in  the bytes before compression
+     * @param out the bytes after compression
+     */
+    void record(final long in, final long out) {
+        filter.record(in, out);
+    }
+
+    /**
+     * Whether the body may be compressed: a compressible media type, not already
+     * encoded, with a status that carries a body.
+     *
+     * @return true when compressible
+     */
+    private boolean isCompressible() {
+        String contentType = getContentType();
+        if (contentType == null || containsHeader(HttpHeaders.CONTENT_ENCODING)
+                || getStatus() == HttpStatus.NO_CONTENT.value()
+                || getStatus() == HttpStatus.NOT_MODIFIED.value()) {
+            return false;
+        }
+        String mediaType = contentType.split(";")[0].trim().toLowerCase(Locale.ROOT);
+        return mimeTypes.contains(mediaType);
+    }
+
+    /**
+     * Gets the weak form of an ETag.
+     *
+     * @param etag the ETag
+     * @return the weak ETag
+     */
+    private static String weak(final String etag) {
+        if (etag.startsWith("W/")) {
+            return etag;
+        }
+        return "W/" + etag;
+    }
+
+    /**
+     * Gets the body, creating it on first use.
+     *
+     * @return the stream
+     * @throws IOException the io exception
+     */
+    private CompressingOutputStream stream() throws IOException {
+        if (stream == null) {
+            stream = new CompressingOutputStream(this, super.getOutputStream(), minSize);
+        }
+        return stream;
+    }
+
+    /**
+     * Drop the body buffered so far.
+     */
+    private void discard() {
+        if (stream != null) {
+            stream.discard();
+        }
+        contentLength = -1L;
+    }
+}
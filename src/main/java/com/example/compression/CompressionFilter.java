@@ -0,0 +1,260 @@
+package com.example.compression;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Compresses the responses with gzip or deflate, as negotiated with the
+ * Accept-Encoding header of the request. Bodies are compressed as they are
+ * written, once they exceed the minimum size, so a large page or an export is
+ * never held in memory. The bytes saved are published on the metrics endpoint.
+ */
+@Component
+public class CompressionFilter extends OncePerRequestFilter implements PublicMetrics {
+
+    /**
+     * The gzip content coding.
+     */
+    static final String GZIP = "gzip";
+
+    /**
+     * The deflate content coding.
+     */
+    static final String DEFLATE = "deflate";
+
+    /**
+     * Whether responses are compressed at all.
+     */
+    @Value("${memo.compression.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Bodies shorter than this are sent as they are.
+     */
+    @Value("${memo.compression.min-size:1024}")
+    private int minSize;
+
+    /**
+     * The media types compressed.
+     */
+    @Value("${memo.compression.mime-types:application/json,application/xml,"
+            + "application/x-ndjson,text/csv,text/html,text/plain}")
+    private String[] mimeTypes;
+
+    /**
+     * The responses compressed.
+     */
+    private final AtomicLong responses = new AtomicLong();
+
+    /**
+     * The bytes of the compressed responses before compression.
+     */
+    private final AtomicLong bytesIn = new AtomicLong();
+
+    /**
+     * The bytes of the compressed responses after compression.
+     */
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * Wrap the response when the client accepts a coding, and finish the
+     * compression once the request, or its async processing, is complete.
+     *
+     * @param request     the request
+     * @param response    the response
+     * @param filterChain the filter chain
+     * @throws ServletException the servlet exception
+     * @throws IOException      the io exception
+     */
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final FilterChain filterChain)
+            throws ServletException, IOException {
+        String coding = null;
+        if (enabled && !"HEAD".equals(request.getMethod())) {
+            coding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        }
+        if (coding == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse compressing =
+                new CompressingResponse(response, coding, minSize,
+                        Arrays.asList(mimeTypes), this);
+        filterChain.doFilter(request, compressing);
+        if (request.isAsyncStarted()) {
+            request.getAsyncContext().addListener(new Finisher(compressing));
+        } else {
+            compressing.finish();
+        }
+    }
+
+    /**
+     * Choose the content coding of a response, gzip first, then deflate.
+     *
+     * @param acceptEncoding the Accept-Encoding header, null when absent
+     * @return the coding, null when the response is sent as it is
+     */
+    static String negotiate(final String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean gzip = false;
+        boolean deflate = false;
+        boolean any = false;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!accepted(parts)) {
+                continue;
+            }
+            if (GZIP.equals(coding) || "x-gzip".equals(coding)) {
+                gzip = true;
+            } else if (DEFLATE.equals(coding)) {
+                deflate = true;
+            } else if ("*".equals(coding)) {
+                any = true;
+            }
+        }
+        if (gzip || any) {
+            return GZIP;
+        }
+        if (deflate) {
+            return DEFLATE;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the quality of a coding is above zero.
+     *
+     * @param parts the coding and its parameters
+     * @return false for q=0
+     */
+    private static boolean accepted(final String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String param = parts[i].trim();
+            if (param.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(param.substring(2)) > 0;
+                } catch (NumberFormatException ex) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record a compressed response.
+     *
+     * @param in  the bytes before compression
+     * @param out the bytes after compression
+     */
+    void record(final long in, final long out) {
+        responses.incrementAndGet();
+        bytesIn.addAndGet(in);
+        bytesOut.addAndGet(out);
+    }
+
+    /**
+     * Compression metrics.
+     *
+     * @return the metrics
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        long in = bytesIn.get();
+        long out = bytesOut.get();
+        Collection<Metric<?>> metrics = newArrayList();
+        metrics.add(new Metric<Long>("memo.compression.responses", responses.get()));
+        metrics.add(new Metric<Long>("memo.compression.bytesIn", in));
+        metrics.add(new Metric<Long>("memo.compression.bytesOut", out));
+        metrics.add(new Metric<Long>("memo.compression.bytesSaved", in - out));
+        if (in > 0) {
+            metrics.add(new Metric<Double>("memo.compression.ratio", (double) out / in));
+        }
+        return metrics;
+    }
+
+    /**
+     * Finishes the compression of an async response once it is complete.
+     */
+    private static final class Finisher implements AsyncListener {
+
+        /**
+         * The response.
+         */
+        private final CompressingResponse response;
+
+        /**
+         * Instantiates a new Finisher.
+         *
+         * @param compressing the response
+         */
+        private Finisher(final CompressingResponse compressing) {
+            this.response = compressing;
+        }
+
+        /**
+         * Finish the response.
+         *
+         * @param event the event
+         * @throws IOException the io exception
+         */
+        @Override
+        public void onComplete(final AsyncEvent event) throws IOException {
+            response.finish();
+        }
+
+        /**
+         * Nothing to do, the response completes afterwards.
+         *
+         * @param event the event
+         */
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            // completed afterwards
+        }
+
+        /**
+         * Nothing to do, the response completes afterwards.
+         *
+         * @param event the event
+         */
+        @Override
+        public void onError(final AsyncEvent event) {
+            // completed afterwards
+        }
+
+        /**
+         * Nothing to do, the listener stays registered for the next cycle.
+         *
+         * @param event the event
+         */
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // still registered
+        }
+    }
+}
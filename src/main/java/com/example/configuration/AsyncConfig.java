@@ -0,0 +1,39 @@
+package com.example.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Async configuration, the executor the memo reads run on off the servlet threads.
+ */
+@Configuration
+public class AsyncConfig {
+
+    /**
+     * Name of the executor of the memo database reads.
+     */
+    public static final String DB_EXECUTOR = "memoDbExecutor";
+
+    /**
+     * The executor of the memo database reads. It is bounded in threads and in
+     * queued reads; once both are full further reads are rejected, and answered
+     * with 503, instead of piling up on the servlet threads.
+     *
+     * @param poolSize      the number of threads, in line with the connection pool
+     * @param queueCapacity the number of reads waiting for a thread
+     * @return the executor
+     */
+    @Bean(name = DB_EXECUTOR)
+    public ThreadPoolTaskExecutor memoDbExecutor(
+            @Value("${memo.async.pool-size:20}") final int poolSize,
+            @Value("${memo.async.queue-capacity:100}") final int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("memo-db-");
+        return executor;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.configuration;
+
+import com.example.metrics.LatencyRegistry;
+import com.example.metrics.MeteredDataSource;
+import com.example.routing.ReadYourWrites;
+import com.example.routing.ReplicaRoutingDataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data source configuration: the Tomcat JDBC pool of the primary database with
+ * its borrows timed, and the read replicas the read only transactions are routed
+ * to.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    /**
+     * The pool of the primary database. The connection and pool settings are bound
+     * from spring.datasource, the way Spring Boot binds its own Tomcat pool, so the
+     * datasource metrics still apply.
+     *
+     * @param registry the latency registry the borrow waits are recorded in
+     * @return the data source
+     */
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource")
+    public MeteredDataSource primaryDataSource(final LatencyRegistry registry) {
+        return new MeteredDataSource(registry);
+    }
+
+    /**
+     * The data source sending the read only transactions to the replicas, when
+     * there are, and the rest to the primary.
+     *
+     * @param primary        the primary
+     * @param readYourWrites the read-your-writes window
+     * @param replicaUrls    the JDBC URLs of the replicas, none to use the primary
+     *                       alone
+     * @param selection      how a replica is picked, round-robin or
+     *                       least-connections
+     * @return the data source
+     */
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(
+            final MeteredDataSource primary, final ReadYourWrites readYourWrites,
+            @Value("${memo.replicas.urls:}") final String[] replicaUrls,
+            @Value("${memo.replicas.selection:round-robin}") final String selection) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            replicas.add(replica(primary, url, replicas.size()));
+        }
+        return new ReplicaRoutingDataSource(primary, replicas,
+                ReplicaRoutingDataSource.Selection.parse(selection), readYourWrites);
+    }
+
+    /**
+     * The data source of the application. Connections are only taken from the
+     * routing data source on the first statement, once the transaction is known.
+     *
+     * @param routing the routing data source
+     * @return the data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(final ReplicaRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * The JMX bean of the primary pool, in place of the one of Spring Boot which
+     * only knows a Tomcat pool as the application data source.
+     *
+     * @param primary the primary
+     * @return the JMX bean
+     * @throws SQLException when the pool cannot be created
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "spring.datasource", name = "jmx-enabled",
+            havingValue = "true", matchIfMissing = true)
+    public Object dataSourceMBean(final MeteredDataSource primary) throws SQLException {
+        return primary.createPool().getJmxPool();
+    }
+
+    /**
+     * Build the pool of a replica, with the credentials and pool settings of the
+     * primary.
+     *
+     * @param primary the primary
+     * @param url     the JDBC URL of the replica
+     * @param index   the index of the replica
+     * @return the pool
+     */
+    private static DataSource replica(final MeteredDataSource primary, final String url,
+                                      final int index) {
+        PoolProperties properties = new PoolProperties();
+        BeanUtils.copyProperties(primary.getPoolProperties(), properties);
+        properties.setUrl(url);
+        properties.setName("replica-" + index);
+        properties.setJmxEnabled(false);
+        return new org.apache.tomcat.jdbc.pool.DataSource(properties);
+    }
+}
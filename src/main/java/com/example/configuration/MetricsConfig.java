@@ -0,0 +1,30 @@
+package com.example.configuration;
+
+import com.example.metrics.LatencyInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Metrics configuration, times the requests of every handler method.
+ */
+@Configuration
+public class MetricsConfig extends WebMvcConfigurerAdapter {
+
+    /**
+     * The latency interceptor.
+     */
+    @Autowired
+    private LatencyInterceptor latencyInterceptor;
+
+    /**
+     * Add the latency interceptor.
+     *
+     * @param registry the registry
+     */
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(latencyInterceptor);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.controller.rest;
+
+import com.example.exception.InvalidArgumentException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * Opaque position in the change feed: the change sequence and the memo id of the
+ * last change a client has seen. The id separates the memos of a bulk create,
+ * which share one change sequence.
+ */
+final class MemoChangeToken {
+
+    /**
+     * The position at the start of the feed.
+     */
+    static final MemoChangeToken START = new MemoChangeToken(0L, 0L);
+
+    /**
+     * The change sequence.
+     */
+    private final long changeSeq;
+
+    /**
+     * The memo id.
+     */
+    private final long id;
+
+    /**
+     * Instantiates a new Memo change token.
+     *
+     * @param seq the change sequence
+     * @param memoId the memo id
+     */
+    MemoChangeToken(final long seq, final long memoId) {
+        this.changeSeq = seq;
+        this.id = memoId;
+    }
+
+    /**
+     * Decode a token. An empty token is the start of the feed.
+     *
+     * @param token the opaque token
+     * @return the position
+     */
+    static MemoChangeToken decode(final String token) {
+        if (isEmpty(token)) {
+            return START;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token),
+                    StandardCharsets.US_ASCII).split("\\.");
+            if (parts.length != 2) {
+                throw new InvalidArgumentException("Invalid change token.");
+            }
+            long seq = Long.parseLong(parts[0]);
+            long memoId = Long.parseLong(parts[1]);
+            if (seq < 0 || memoId < 0) {
+                throw new InvalidArgumentException("Invalid change token.");
+            }
+            return new MemoChangeToken(seq, memoId);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidArgumentException("Invalid change token.", ex);
+        }
+    }
+
+    /**
+     * Encode the token.
+     *
+     * @return the opaque token
+     */
+    String encode() {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                (changeSeq + "." + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Gets the change sequence.
+     *
+     * @return the change sequence
+     */
+    long getChangeSeq() {
+        return changeSeq;
+    }
+
+    /**
+     * Gets the memo id.
+     *
+     * @return the memo id
+     */
+    long getId() {
+        return id;
+    }
+}
@@ -1,20 +1,43 @@
 package com.example.controller.rest;
 
 import com.example.api.client.DAOClient;
+import com.example.configuration.AsyncConfig;
 import com.example.exception.DataNotFoundException;
 import com.example.exception.InvalidArgumentException;
 import com.example.exception.InvalidDataException;
 import com.example.exception.MemoRestException;
+import com.example.exception.ServiceUnavailableException;
 import com.example.model.ErrorResponse;
 import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import com.example.model.MemoChange;
+import com.example.model.MemoFilter;
+import com.example.model.MemoGetItem;
 import com.example.model.MemoPage;
+import com.example.model.MemoStats;
+import com.example.model.MemoVersion;
 import com.example.model.Pagination;
 import com.example.model.ServiceResponse;
+import com.example.routing.ReadYourWrites;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.wordnik.swagger.annotations.Api;
 import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiParam;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,12 +46,26 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
+import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
 /**
@@ -55,23 +92,118 @@ public class MemoController {
      */
     public static final String URI_BY_ID = "/{id}";
 
+    /**
+     * URI for bulk operations.
+     */
+    public static final String BULK = "/_bulk";
+
+    /**
+     * URI for multi-get.
+     */
+    public static final String MGET = "/_mget";
+
+    /**
+     * URI for the export.
+     */
+    public static final String EXPORT = "/_export";
+
+    /**
+     * URI for the search.
+     */
+    public static final String SEARCH = "/_search";
+
+    /**
+     * URI for the change feed.
+     */
+    public static final String CHANGES = "/_changes";
+
+    /**
+     * URI for the memo statistics.
+     */
+    public static final String STATS = "/_stats";
+
     /**
      * The constant JSON.
      */
     public static final String JSON = "application/json";
 
+    /**
+     * The constant for JSON Merge Patch documents.
+     */
+    public static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
+    /**
+     * The constant for newline delimited JSON.
+     */
+    public static final String NDJSON = "application/x-ndjson";
+
+    /**
+     * The constant CSV.
+     */
+    public static final String CSV = "text/csv";
+
 
     /**
      * The constant JSON.
      */
     public static final String XML = "application/xml";
 
+    /**
+     * The fields of a memo, in the order they are listed.
+     */
+    private static final List<String> MEMO_FIELDS = Arrays.asList("id", "title",
+            "author", "text", "created", "updated", "version");
+
+    /**
+     * Reader of memos from newline delimited JSON.
+     */
+    private static final ObjectReader MEMO_READER = new ObjectMapper()
+            .readerFor(Memo.class)
+            .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
     /**
      * Dao client.
      */
     @Autowired
     private DAOClient daoClient;
 
+    /**
+     * The executor the memo reads run on, off the servlet threads.
+     */
+    @Autowired
+    @Qualifier(AsyncConfig.DB_EXECUTOR)
+    private TaskExecutor dbExecutor;
+
+    /**
+     * The read-your-writes window.
+     */
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    /**
+     * How long a read may take before the request is answered with 503.
+     */
+    @Value("${memo.async.timeout-ms:30000}")
+    private long asyncTimeoutMillis;
+
+    /**
+     * Maximum number of memos accepted by a bulk request.
+     */
+    @Value("${memo.bulk.max-items:1000}")
+    private int bulkMaxItems;
+
+    /**
+     * Maximum number of ids accepted by a multi-get request.
+     */
+    @Value("${memo.mget.max-ids:1000}")
+    private int mgetMaxIds;
+
+    /**
+     * Maximum number of memos per page of a listing or a search.
+     */
+    @Value("${memo.page.max-limit:1000}")
+    private int pageMaxLimit;
+
     /**
      * Create a new Memo.
      *
@@ -100,43 +232,300 @@ public class MemoController {
     }
 
     /**
-     * Get a Memo by Id.
+     * Create many Memos from a JSON array.
+     *
+     * @param memos the memos
+     * @return the outcome of each memo
+     */
+    @RequestMapping(value = BULK, method = RequestMethod.POST, consumes = JSON,
+            produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Create Memos in bulk",
+            notes = "Creates new Memos, reporting the id or the error of each one")
+    final ServiceResponse<MemoBulkItem[], String, String> createMemos(
+            @ApiParam(value = "Array of Memo request bodies.")
+            @RequestBody final Memo[] memos) {
+
+        if (memos.length > bulkMaxItems) {
+            throw new InvalidArgumentException(
+                    "Bulk requests are limited to " + bulkMaxItems + " memos.");
+        }
+        return createMemos(Arrays.asList(memos));
+    }
+
+    /**
+     * Create many Memos from newline delimited JSON, one memo per line.
+     *
+     * @param req the req
+     * @return the outcome of each memo
+     * @throws IOException when the request body cannot be read
+     */
+    @RequestMapping(value = BULK, method = RequestMethod.POST, consumes = NDJSON,
+            produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Create Memos in bulk from NDJSON",
+            notes = "Creates new Memos, reporting the id or the error of each one")
+    final ServiceResponse<MemoBulkItem[], String, String> createMemosFromStream(
+            final HttpServletRequest req) throws IOException {
+
+        List<Memo> memos = new ArrayList<>();
+        try (MappingIterator<Memo> lines = MEMO_READER.readValues(req.getInputStream())) {
+            while (lines.hasNextValue()) {
+                if (memos.size() == bulkMaxItems) {
+                    throw new InvalidArgumentException(
+                            "Bulk requests are limited to " + bulkMaxItems + " memos.");
+                }
+                memos.add(lines.nextValue());
+            }
+        } catch (JsonProcessingException ex) {
+            throw new InvalidDataException("Malformed memo line: "
+                    + ex.getOriginalMessage(), ex);
+        }
+        return createMemos(memos);
+    }
+
+    /**
+     * Create the memos of a bulk request.
+     *
+     * @param memos the memos
+     * @return the outcome of each memo
+     */
+    private ServiceResponse<MemoBulkItem[], String, String> createMemos(
+            final List<Memo> memos) {
+        if (memos.isEmpty()) {
+            throw new InvalidArgumentException("Bulk request has no memos.");
+        }
+        List<MemoBulkItem> items = daoClient.createMemos(memos);
+        return new ServiceResponse<>(items.toArray(new MemoBulkItem[items.size()]),
+                null, null);
+    }
+
+    /**
+     * Export all Memos in id order, as NDJSON or CSV. The memos are written to
+     * the response as they are read from the database cursor, without building
+     * pages.
+     *
+     * @param format the format, ndjson or csv
+     * @param resp the resp
+     * @throws IOException the io exception
+     */
+    @RequestMapping(value = EXPORT, method = RequestMethod.GET)
+    @ApiOperation(value = "Export all Memos", notes = "Stream all Memos as NDJSON or CSV")
+    final void exportMemos(
+            @ApiParam(value = "The format, ndjson or csv.", required = false,
+                    defaultValue = "ndjson")
+            @RequestParam(defaultValue = "ndjson", required = false) final String format,
+            final HttpServletResponse resp) throws IOException {
+
+        if ("csv".equals(format)) {
+            resp.setContentType(CSV + ";charset=UTF-8");
+            resp.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=memos.csv");
+            Writer csv = new OutputStreamWriter(resp.getOutputStream(),
+                    StandardCharsets.UTF_8);
+            csv.write(MemoExport.CSV_HEADER + "\r\n");
+            daoClient.streamMemos(memo -> MemoExport.writeCsv(csv, memo));
+            csv.flush();
+        } else if ("ndjson".equals(format)) {
+            resp.setContentType(NDJSON + ";charset=UTF-8");
+            resp.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=memos.ndjson");
+            JsonGenerator json = MemoExport.openJson(resp.getOutputStream());
+            daoClient.streamMemos(memo -> MemoExport.writeJson(json, memo));
+            json.flush();
+        } else {
+            throw new InvalidArgumentException("Export format should be ndjson or csv.");
+        }
+    }
+
+    /**
+     * Get a Memo by Id. The response carries an ETag and a Last-Modified date;
+     * a conditional request is first checked against the version of the memo
+     * alone and answered with 304 Not Modified, without a body, when the client
+     * copy is current. The memo is read on the database executor, which is handed
+     * the conditional headers and not the request.
      *
      * @param id the id
-     * @return Response Message
+     * @param req the req
+     * @return Response Message, without body when not modified
      */
     @RequestMapping(value = URI_BY_ID, method = RequestMethod.GET, produces = {JSON, XML})
     @ResponseBody
-    @ResponseStatus(HttpStatus.OK)
     @ApiOperation(value = "Get a Memo by Id", notes = "Get a Memo by Id")
-    final ServiceResponse<Memo, String, String> getMemo(
+    final DeferredResult<ResponseEntity<ServiceResponse<Memo, String, String>>> getMemo(
             @ApiParam(value = "The ID of the existing Memo resource.")
-            @PathVariable final Long id) {
+            @PathVariable final Long id,
+            final HttpServletRequest req) {
+        MemoValidators.Conditions conditions = MemoValidators.conditions(req);
+        return async(() -> readMemo(id, conditions));
+    }
+
+    /**
+     * Read a Memo by Id.
+     *
+     * @param id the id
+     * @param conditions the conditional headers of the request
+     * @return Response Message, without body when not modified
+     */
+    private ResponseEntity<ServiceResponse<Memo, String, String>> readMemo(
+            final Long id, final MemoValidators.Conditions conditions) {
+        if (conditions.isConditional()) {
+            MemoVersion version = daoClient.getMemoVersion(id);
+            String etag = MemoValidators.etag(version.getId(), version.getVersion());
+            if (MemoValidators.isNotModified(conditions, etag, version.getUpdated())) {
+                return new ResponseEntity<>(
+                        MemoValidators.validators(etag, version.getUpdated()),
+                        HttpStatus.NOT_MODIFIED);
+            }
+        }
         Memo memo = daoClient.getMemo(id);
-        return new ServiceResponse<>(memo, null, null);
+        return MemoValidators.respond(conditions,
+                MemoValidators.etag(memo.getId(), memo.getVersion()),
+                MemoValidators.lastModified(memo),
+                new ServiceResponse<>(memo, null, null));
+    }
+
+
+    /**
+     * Get many Memos by Id, given as a comma separated list. The memos are read
+     * with one query and listed in request order; a missing memo is reported in
+     * its place with a 404 error. The memos are read on the database executor.
+     *
+     * @param ids the ids
+     * @return the memo or the error of each id
+     */
+    @RequestMapping(value = MGET, method = RequestMethod.GET, produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Get many Memos by Id",
+            notes = "Get Memos by Id, reporting the memo or the error of each one")
+    final DeferredResult<ServiceResponse<MemoGetItem[], String, String>> getMemosById(
+            @ApiParam(value = "Comma separated Memo ids.")
+            @RequestParam final String ids) {
+
+        return readMemos(parseIds(ids));
     }
 
+    /**
+     * Parse a comma separated list of memo ids.
+     *
+     * @param ids the ids
+     * @return the ids
+     */
+    private static List<Long> parseIds(final String ids) {
+        List<Long> memoIds = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            try {
+                memoIds.add(Long.valueOf(id.trim()));
+            } catch (NumberFormatException ex) {
+                throw new InvalidArgumentException("Memo id " + id + " is not a number.");
+            }
+        }
+        return memoIds;
+    }
 
     /**
-     * Get list of all Memos.
+     * Get many Memos by Id, given as a JSON array.
+     *
+     * @param ids the ids
+     * @return the memo or the error of each id
+     */
+    @RequestMapping(value = MGET, method = RequestMethod.POST, consumes = JSON,
+            produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Get many Memos by Id",
+            notes = "Get Memos by Id, reporting the memo or the error of each one")
+    final DeferredResult<ServiceResponse<MemoGetItem[], String, String>> postMemosById(
+            @ApiParam(value = "Array of Memo ids.") @RequestBody final Long[] ids) {
+
+        return readMemos(Arrays.asList(ids));
+    }
+
+    /**
+     * Get the memos of a multi-get request.
+     *
+     * @param ids the ids
+     * @return the memo or the error of each id
+     */
+    private DeferredResult<ServiceResponse<MemoGetItem[], String, String>> readMemos(
+            final List<Long> ids) {
+        if (ids.isEmpty() || ids.contains(null)) {
+            throw new InvalidArgumentException("Multi-get request needs memo ids.");
+        }
+        if (ids.size() > mgetMaxIds) {
+            throw new InvalidArgumentException(
+                    "Multi-get requests are limited to " + mgetMaxIds + " ids.");
+        }
+        return async(() -> {
+            List<MemoGetItem> items = daoClient.getMemos(ids);
+            return new ServiceResponse<>(items.toArray(new MemoGetItem[items.size()]),
+                    null, null);
+        });
+    }
+
+    /**
+     * Get list of all Memos, optionally filtered by author and time and sorted.
+     * Pages are addressed either by page number or, when the after cursor is
+     * supplied, by keyset so deep pages cost the same as the first one; keyset
+     * pages are in id order. With fields only those columns are read and listed,
+     * so the text can be left out of the query and of the response. The page is
+     * read on the database executor, which is handed the request URL and the
+     * conditional headers and not the request.
      *
      * @param page the page
      * @param limit the limit
+     * @param after the cursor to continue after
+     * @param includeTotal whether to compute the total of records
+     * @param filterParams the filter, order and projection
      * @param req the req
-     * @return Response Message
+     * @return Response Message, without body when not modified
      */
     @RequestMapping(method = RequestMethod.GET, produces = {JSON, XML})
     @ResponseBody
-    @ResponseStatus(HttpStatus.OK)
     @ApiOperation(value = "Get List of Memos", notes = "Get Memos")
-    final ServiceResponse<Memo[], Pagination, String> getMemos(
+    final DeferredResult<ResponseEntity<ServiceResponse<Object[], Pagination, String>>>
+            getMemos(
             @ApiParam(value = "The page number.", required = false, defaultValue = "0")
             @RequestParam(defaultValue = "0", required = false) final int page,
             @ApiParam(value = "Results per page.", required = false, defaultValue = "10")
             @RequestParam(defaultValue = "10", required = false) final int limit,
+            @ApiParam(value = "Cursor from a previous page, empty for the first page.",
+                    required = false)
+            @RequestParam(required = false) final String after,
+            @ApiParam(value = "Include the total of records.", required = false,
+                    defaultValue = "false")
+            @RequestParam(defaultValue = "false", required = false)
+            final boolean includeTotal,
+            final MemoFilterParams filterParams,
             final HttpServletRequest req) {
 
         // Validates incoming params.
+        checkPage(page, limit);
+
+        MemoFilter filter = filterParams.toFilter();
+        String url = req.getRequestURL().toString();
+        MemoValidators.Conditions conditions = MemoValidators.conditions(req);
+
+        if (after != null) {
+            long afterId = MemoCursor.decode(after);
+            return async(() -> getMemosAfter(afterId, limit, filter, url, conditions));
+        }
+        return async(() -> getMemosForPage(page, limit, includeTotal, filter, url,
+                conditions));
+    }
+
+    /**
+     * Check the page number and the limit of a listing or a search. The limit is
+     * capped, and the memos up to the end of the page, plus the one telling whether
+     * there is a next page, have to be addressable by an int offset.
+     *
+     * @param page  the page
+     * @param limit the limit
+     */
+    private void checkPage(final int page, final int limit) {
         if (page < 0) {
             throw new InvalidArgumentException(
                     "Page number should be equals or greater than 0");
@@ -147,34 +536,319 @@ public class MemoController {
                     "Limit number should be equals or greater than 1");
         }
 
-        MemoPage pageResponse = daoClient.getMemosForPage(page, limit);
+        if (limit > pageMaxLimit) {
+            throw new InvalidArgumentException(
+                    "Limit number should be at most " + pageMaxLimit);
+        }
+
+        if ((long) page * limit > Integer.MAX_VALUE - limit - 1) {
+            throw new InvalidArgumentException(
+                    "Page number is too large for the limit");
+        }
+    }
 
-        Memo[] memoArray = null;
+    /**
+     * Get a page of Memos by page number.
+     *
+     * @param page the page
+     * @param limit the limit
+     * @param includeTotal whether to compute the total of records
+     * @param filter the filter
+     * @param url the request URL
+     * @param conditions the conditional headers of the request
+     * @return Response Message, without body when not modified
+     */
+    private ResponseEntity<ServiceResponse<Object[], Pagination, String>>
+            getMemosForPage(final int page, final int limit, final boolean includeTotal,
+                            final MemoFilter filter, final String url,
+                            final MemoValidators.Conditions conditions) {
 
-        Pagination pagination = null;
+        MemoPage pageResponse = daoClient.getMemosForPage(page, limit, includeTotal,
+                filter);
 
         if (pageResponse != null && isNotEmpty(pageResponse.getMemoList())) {
             List<Memo> list = pageResponse.getMemoList();
-            memoArray = list.toArray(new Memo[list.size()]);
+            Object[] memoArray = project(list, filter.getFields());
+
+            String totalParam = MemoFilterParams.query(filter);
+            if (includeTotal) {
+                totalParam = "&includeTotal=true" + totalParam;
+            }
 
             String prev = null;
             String next = null;
             if (pageResponse.getPrevPageNumber() != null) {
-                prev = req.getRequestURL()
-                        + "?page=" + pageResponse.getPrevPageNumber() + "&limit=" + limit;
+                prev = url
+                        + "?page=" + pageResponse.getPrevPageNumber() + "&limit=" + limit
+                        + totalParam;
             }
 
             if (pageResponse.getNextPageNumber() != null) {
-                next = req.getRequestURL()
-                        + "?page=" + pageResponse.getNextPageNumber() + "&limit=" + limit;
+                next = url
+                        + "?page=" + pageResponse.getNextPageNumber() + "&limit=" + limit
+                        + totalParam;
             }
-            pagination = new Pagination(pageResponse.getTotalMemosSize(), prev, next);
-        } else {
+            Pagination pagination =
+                    new Pagination(pageResponse.getTotalMemosSize(), prev, next);
+
+            return MemoValidators.respond(conditions,
+                    MemoValidators.etag(list, pageResponse.getTotalMemosSize()), null,
+                    new ServiceResponse<>(memoArray, pagination, null));
+        }
+        throw new DataNotFoundException("No memos found for requested page parameters.");
+    }
+
+    /**
+     * Run a read on the database executor. The servlet thread is released at once
+     * and the response is written when the read completes. When all the executor
+     * threads are busy and its queue is full, or when the read takes too long, the
+     * request is answered with 503 so a slow database cannot hold every servlet
+     * thread. The read runs for the client of the request, so it sees the writes
+     * of that client. The read must not touch the request nor the response, which
+     * belong to the servlet thread: what it needs of the request is read before,
+     * and its headers and status are returned in a response entity.
+     *
+     * @param task the read
+     * @param <T> the type of the response
+     * @return the deferred response
+     */
+    private <T> DeferredResult<T> async(final Callable<T> task) {
+        Callable<T> read = readYourWrites.bind(task);
+        DeferredResult<T> result = new DeferredResult<>(asyncTimeoutMillis);
+        result.onTimeout(() -> result.setErrorResult(new ServiceUnavailableException(
+                "The memo database did not answer in time.")));
+        try {
+            dbExecutor.execute(() -> {
+                try {
+                    result.setResult(read.call());
+                } catch (Exception ex) {
+                    result.setErrorResult(ex);
+                }
+            });
+        } catch (TaskRejectedException ex) {
+            throw new ServiceUnavailableException(
+                    "Too many requests are waiting for the memo database.", ex);
+        }
+        return result;
+    }
+
+    /**
+     * Restrict the memos of a listing to the requested fields. The id is always
+     * kept and the fields are written in the order of the memo model.
+     *
+     * @param memos the memos
+     * @param fields the fields, null for the whole memos
+     * @return the memos, or maps of the requested fields
+     */
+    private static Object[] project(final List<Memo> memos, final Set<String> fields) {
+        if (fields == null) {
+            return memos.toArray(new Memo[memos.size()]);
+        }
+        Object[] projected = new Object[memos.size()];
+        for (int i = 0; i < projected.length; i++) {
+            BeanWrapper memo =
+                    PropertyAccessorFactory.forBeanPropertyAccess(memos.get(i));
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (String field : MEMO_FIELDS) {
+                if ("id".equals(field) || fields.contains(field)) {
+                    values.put(field, memo.getPropertyValue(field));
+                }
+            }
+            projected[i] = values;
+        }
+        return projected;
+    }
+
+    /**
+     * Get a page of Memos in keyset mode. There is no previous link and no total,
+     * the next link carries the cursor of the last memo returned.
+     *
+     * @param afterId the memo id to continue after
+     * @param limit the limit
+     * @param filter the filter
+     * @param url the request URL
+     * @param conditions the conditional headers of the request
+     * @return Response Message, without body when not modified
+     */
+    private ResponseEntity<ServiceResponse<Object[], Pagination, String>> getMemosAfter(
+            final long afterId, final int limit, final MemoFilter filter,
+            final String url, final MemoValidators.Conditions conditions) {
+
+        MemoPage pageResponse = daoClient.getMemosAfter(afterId, limit, filter);
+
+        if (pageResponse == null || isEmpty(pageResponse.getMemoList())) {
             throw new DataNotFoundException(
                     "No memos found for requested page parameters.");
         }
 
-        return new ServiceResponse<>(memoArray, pagination, null);
+        List<Memo> list = pageResponse.getMemoList();
+        Object[] memoArray = project(list, filter.getFields());
+
+        String next = null;
+        if (pageResponse.getNextAfterId() != null) {
+            next = url
+                    + "?after=" + MemoCursor.encode(pageResponse.getNextAfterId())
+                    + "&limit=" + limit + MemoFilterParams.query(filter);
+        }
+
+        return MemoValidators.respond(conditions, MemoValidators.etag(list, null), null,
+                new ServiceResponse<>(memoArray, new Pagination(null, null, next), null));
+    }
+
+
+    /**
+     * Search Memos by the words of their title, author and text, best match first.
+     * Pages are addressed by number; there is no total, to spare counting all the
+     * matches. The search runs on the database executor.
+     *
+     * @param q the words to look for
+     * @param page the page
+     * @param limit the limit
+     * @param req the req
+     * @return Response Message
+     */
+    @RequestMapping(value = SEARCH, method = RequestMethod.GET, produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Search Memos",
+            notes = "Search Memos by title, author and text")
+    final DeferredResult<ServiceResponse<Memo[], Pagination, String>> searchMemos(
+            @ApiParam(value = "The words to look for.")
+            @RequestParam final String q,
+            @ApiParam(value = "The page number.", required = false, defaultValue = "0")
+            @RequestParam(defaultValue = "0", required = false) final int page,
+            @ApiParam(value = "Results per page.", required = false, defaultValue = "10")
+            @RequestParam(defaultValue = "10", required = false) final int limit,
+            final HttpServletRequest req) {
+
+        if (q.trim().isEmpty()) {
+            throw new InvalidArgumentException("Search query should not be empty");
+        }
+
+        checkPage(page, limit);
+
+        String url = req.getRequestURL().toString();
+        return async(() -> search(q, page, limit, url));
+    }
+
+    /**
+     * Search a page of Memos.
+     *
+     * @param q the words to look for
+     * @param page the page
+     * @param limit the limit
+     * @param url the request URL
+     * @return Response Message
+     * @throws UnsupportedEncodingException never, UTF-8 is always supported
+     */
+    private ServiceResponse<Memo[], Pagination, String> search(final String q,
+            final int page, final int limit, final String url)
+            throws UnsupportedEncodingException {
+
+        MemoPage pageResponse = daoClient.searchMemos(q, page, limit);
+
+        if (pageResponse == null || isEmpty(pageResponse.getMemoList())) {
+            throw new DataNotFoundException(
+                    "No memos found for requested search parameters.");
+        }
+
+        List<Memo> list = pageResponse.getMemoList();
+        Memo[] memoArray = list.toArray(new Memo[list.size()]);
+
+        String query = url + "?q="
+                + URLEncoder.encode(q, StandardCharsets.UTF_8.name());
+        String prev = null;
+        String next = null;
+        if (pageResponse.getPrevPageNumber() != null) {
+            prev = query + "&page=" + pageResponse.getPrevPageNumber()
+                    + "&limit=" + limit;
+        }
+        if (pageResponse.getNextPageNumber() != null) {
+            next = query + "&page=" + pageResponse.getNextPageNumber()
+                    + "&limit=" + limit;
+        }
+
+        return new ServiceResponse<>(memoArray, new Pagination(null, prev, next), null);
+    }
+
+
+    /**
+     * Get the changes of the Memos since a token, oldest first: created and
+     * updated Memos as of their last write, and tombstones of deleted Memos. The
+     * next link carries the token of the last change listed; an empty page means
+     * the client is up to date and should poll the next link later. Without a
+     * token the feed starts from the beginning and leaves the tombstones out. The
+     * changes are read on the database executor.
+     *
+     * @param since the token of the last change seen, empty for a first sync
+     * @param limit the limit
+     * @param req the req
+     * @return Response Message
+     */
+    @RequestMapping(value = CHANGES, method = RequestMethod.GET, produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Get Memo changes",
+            notes = "Get the Memos changed and deleted since a token")
+    final DeferredResult<ServiceResponse<MemoChange[], Pagination, String>> getChanges(
+            @ApiParam(value = "Token from the next link of a previous call, empty for"
+                    + " a first sync.", required = false)
+            @RequestParam(required = false) final String since,
+            @ApiParam(value = "Changes per page.", required = false,
+                    defaultValue = "100")
+            @RequestParam(defaultValue = "100", required = false) final int limit,
+            final HttpServletRequest req) {
+
+        if (limit < 1) {
+            throw new InvalidArgumentException(
+                    "Limit number should be equals or greater than 1");
+        }
+
+        MemoChangeToken start = MemoChangeToken.decode(since);
+        String url = req.getRequestURL().toString();
+        return async(() -> readChanges(start, limit, url));
+    }
+
+    /**
+     * Read a page of Memo changes.
+     *
+     * @param since the token of the last change seen
+     * @param limit the limit
+     * @param url the request URL
+     * @return Response Message
+     */
+    private ServiceResponse<MemoChange[], Pagination, String> readChanges(
+            final MemoChangeToken since, final int limit, final String url) {
+
+        MemoChangeToken token = since;
+        List<MemoChange> changes = daoClient.getChanges(token.getChangeSeq(),
+                token.getId(), limit, token != MemoChangeToken.START);
+
+        if (!changes.isEmpty()) {
+            MemoChange last = changes.get(changes.size() - 1);
+            token = new MemoChangeToken(last.getChangeSeq(), last.getId());
+        }
+        String next = url + "?since=" + token.encode()
+                + "&limit=" + limit;
+
+        return new ServiceResponse<>(changes.toArray(new MemoChange[changes.size()]),
+                new Pagination(null, null, next), null);
+    }
+
+    /**
+     * Get the statistics of the Memos: the total, the counts of the top authors and
+     * by text length, and the create, update and delete rates. They are served from
+     * memory, refreshed in the background, so this never aggregates the table.
+     *
+     * @return Response Message
+     */
+    @RequestMapping(value = STATS, method = RequestMethod.GET, produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Get Memo statistics",
+            notes = "Get the counts and write rates of the Memos")
+    final ServiceResponse<MemoStats, String, String> getStats() {
+        return new ServiceResponse<>(daoClient.getStats(), null, null);
     }
 
 
@@ -202,6 +876,25 @@ public class MemoController {
         daoClient.updateMemo(request);
     }
 
+    /**
+     * Patch the Memo with a JSON Merge Patch document, only the supplied fields
+     * are changed.
+     *
+     * @param id the id
+     * @param fields the fields to change
+     */
+    @RequestMapping(value = URI_BY_ID, method = RequestMethod.PATCH,
+            consumes = {MERGE_PATCH_JSON, JSON}, produces = {JSON, XML})
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    @ResponseBody
+    @ApiOperation(value = "Patch Memo", notes = "Update some fields of a Memo")
+    final void patchMemo(@ApiParam(value = "The ID of the existing memo resource.")
+                         @PathVariable final Long id,
+                         @ApiParam(value = "The memo fields to change.")
+                         @RequestBody final Map<String, Object> fields) {
+        daoClient.patchMemo(id, fields);
+    }
+
     /**
      * Delete the Memo.
      *
@@ -216,4 +909,40 @@ public class MemoController {
 
         daoClient.deleteMemo(id);
     }
+
+    /**
+     * Delete many Memos, given by id or by a filter on author and time. The memos
+     * are deleted with one statement per batch, not read first.
+     *
+     * @param ids the comma separated ids
+     * @param filterParams the filter
+     * @return the number of memos deleted
+     */
+    @RequestMapping(method = RequestMethod.DELETE, produces = {JSON, XML})
+    @ResponseBody
+    @ResponseStatus(HttpStatus.OK)
+    @ApiOperation(value = "Delete Memos",
+            notes = "Delete Memos by id or by author and time, reporting the count")
+    final ServiceResponse<Integer, String, String> deleteMemos(
+            @ApiParam(value = "Comma separated Memo ids.", required = false)
+            @RequestParam(required = false) final String ids,
+            final MemoFilterParams filterParams) {
+
+        MemoFilter filter = filterParams.toFilter();
+        int deleted;
+        if (ids != null) {
+            if (filter.hasCriteria()) {
+                throw new InvalidArgumentException(
+                        "Memos are deleted either by id or by filter.");
+            }
+            deleted = daoClient.deleteMemos(parseIds(ids));
+        } else if (filter.hasCriteria()) {
+            deleted = daoClient.deleteMemos(filter);
+        } else {
+            throw new InvalidArgumentException(
+                    "Memos are deleted by ids, author, createdFrom, createdTo"
+                            + " or updatedSince.");
+        }
+        return new ServiceResponse<>(deleted, null, null);
+    }
 }
@@ -0,0 +1,54 @@
+package com.example.controller.rest;
+
+import com.example.exception.InvalidArgumentException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * Encodes and decodes the opaque cursors used by the keyset pagination.
+ */
+final class MemoCursor {
+
+    /**
+     * Hidden constructor for the utility class.
+     */
+    private MemoCursor() {
+    }
+
+    /**
+     * Encode the id of the last memo of a page into a cursor.
+     *
+     * @param id the memo id
+     * @return the opaque cursor
+     */
+    static String encode(final long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decode a cursor into the id of the memo to continue after. An empty cursor
+     * starts from the beginning.
+     *
+     * @param cursor the opaque cursor
+     * @return the memo id
+     */
+    static long decode(final String cursor) {
+        if (isEmpty(cursor)) {
+            return 0L;
+        }
+        try {
+            long id = Long.parseLong(new String(Base64.getUrlDecoder().decode(cursor),
+                    StandardCharsets.US_ASCII));
+            if (id < 0) {
+                throw new InvalidArgumentException("Invalid pagination cursor.");
+            }
+            return id;
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidArgumentException("Invalid pagination cursor.", ex);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.controller.rest;
+
+import com.example.model.Memo;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Date;
+
+/**
+ * Writes exported memos one at a time, as NDJSON or as CSV. Nothing but the
+ * buffer of the output is kept, so an export runs in constant memory.
+ */
+final class MemoExport {
+
+    /**
+     * Header line of the CSV export.
+     */
+    static final String CSV_HEADER = "id,title,author,text,created,updated,version";
+
+    /**
+     * Writer of a memo as JSON, flushing is left to the output buffer.
+     */
+    private static final ObjectWriter MEMO_WRITER = new ObjectMapper()
+            .writerFor(Memo.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    /**
+     * Hidden constructor for the utility class.
+     */
+    private MemoExport() {
+    }
+
+    /**
+     * Open an NDJSON generator on an output.
+     *
+     * @param out the output
+     * @return the generator to pass to {@link #writeJson(JsonGenerator, Memo)}
+     * @throws IOException the io exception
+     */
+    static JsonGenerator openJson(final OutputStream out) throws IOException {
+        return MEMO_WRITER.getFactory().createGenerator(out).setRootValueSeparator(null);
+    }
+
+    /**
+     * Write a memo as one NDJSON line.
+     *
+     * @param json the generator
+     * @param memo the memo
+     */
+    static void writeJson(final JsonGenerator json, final Memo memo) {
+        try {
+            MEMO_WRITER.writeValue(json, memo);
+            json.writeRaw('\n');
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Write a memo as one CSV record, dates in ISO-8601.
+     *
+     * @param csv the output
+     * @param memo the memo
+     */
+    static void writeCsv(final Writer csv, final Memo memo) {
+        try {
+            csv.write(String.valueOf(memo.getId()));
+            csv.write(',');
+            csv.write(quote(memo.getTitle()));
+            csv.write(',');
+            csv.write(quote(memo.getAuthor()));
+            csv.write(',');
+            csv.write(quote(memo.getText()));
+            csv.write(',');
+            csv.write(date(memo.getCreated()));
+            csv.write(',');
+            csv.write(date(memo.getUpdated()));
+            csv.write(',');
+            csv.write(String.valueOf(memo.getVersion()));
+            csv.write("\r\n");
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Quote a CSV field when it holds a separator, a quote or a line break.
+     *
+     * @param value the value
+     * @return the field
+     */
+    static String quote(final String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0
+                && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Format a CSV date.
+     *
+     * @param date the date
+     * @return the field, empty when there is no date
+     */
+    private static String date(final Date date) {
+        if (date == null) {
+            return "";
+        }
+        return date.toInstant().toString();
+    }
+}
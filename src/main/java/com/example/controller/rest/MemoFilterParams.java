@@ -0,0 +1,141 @@
+package com.example.controller.rest;
+
+import com.example.exception.InvalidArgumentException;
+import com.example.model.MemoFilter;
+import com.google.common.net.UrlEscapers;
+import lombok.Data;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The filter, order and projection parameters of the memo listing, bound from the
+ * request. Times are ISO-8601 instants, such as 2015-09-01T10:00:00Z, or dates,
+ * taken at midnight UTC. The parameters are written back into the links to the previous
+ * and next pages.
+ */
+@Data
+public class MemoFilterParams {
+
+    /**
+     * Only the memos of this author.
+     */
+    private String author;
+
+    /**
+     * Only the memos created at or after this time.
+     */
+    private String createdFrom;
+
+    /**
+     * Only the memos created before this time.
+     */
+    private String createdTo;
+
+    /**
+     * Only the memos updated at or after this time.
+     */
+    private String updatedSince;
+
+    /**
+     * Order by created, updated or title, descending with a leading minus sign.
+     */
+    private String sort;
+
+    /**
+     * Only these comma separated memo fields, the id is always listed.
+     */
+    private String fields;
+
+    /**
+     * Build the filter of the listing.
+     *
+     * @return the filter
+     */
+    MemoFilter toFilter() {
+        MemoFilter filter = new MemoFilter();
+        filter.setAuthor(author);
+        filter.setCreatedFrom(time("createdFrom", createdFrom));
+        filter.setCreatedTo(time("createdTo", createdTo));
+        filter.setUpdatedSince(time("updatedSince", updatedSince));
+        filter.setSort(sort);
+        if (fields != null) {
+            Set<String> names = new LinkedHashSet<>();
+            for (String name : fields.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    names.add(name.trim());
+                }
+            }
+            filter.setFields(names);
+        }
+        return filter;
+    }
+
+    /**
+     * Write a filter as query parameters, to append to a page link.
+     *
+     * @param filter the filter
+     * @return the parameters, each one starting with an ampersand
+     */
+    static String query(final MemoFilter filter) {
+        StringBuilder query = new StringBuilder();
+        append(query, "author", filter.getAuthor());
+        append(query, "createdFrom", filter.getCreatedFrom());
+        append(query, "createdTo", filter.getCreatedTo());
+        append(query, "updatedSince", filter.getUpdatedSince());
+        append(query, "sort", filter.getSort());
+        if (filter.getFields() != null) {
+            append(query, "fields", String.join(",", filter.getFields()));
+        }
+        return query.toString();
+    }
+
+    /**
+     * Append a parameter when it is set.
+     *
+     * @param query the query
+     * @param name the parameter name
+     * @param value the parameter value, a string or a date
+     */
+    private static void append(final StringBuilder query, final String name,
+                               final Object value) {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        if (value instanceof Date) {
+            text = ((Date) value).toInstant().toString();
+        }
+        query.append('&').append(name).append('=')
+                .append(UrlEscapers.urlFormParameterEscaper().escape(text));
+    }
+
+    /**
+     * Parse a time parameter.
+     *
+     * @param name the parameter name
+     * @param value the parameter value, null when absent
+     * @return the time, null when absent
+     */
+    private static Date time(final String name, final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (value.indexOf('T') < 0) {
+                return Date.from(LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC)
+                        .toInstant());
+            }
+            return Date.from(Instant.parse(value));
+        } catch (DateTimeException ex) {
+            throw new InvalidArgumentException(name
+                    + " should be an ISO-8601 date or instant, such as 2015-09-01 or"
+                    + " 2015-09-01T10:00:00Z.", ex);
+        }
+    }
+}
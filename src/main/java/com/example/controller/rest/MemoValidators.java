@@ -0,0 +1,222 @@
+package com.example.controller.rest;
+
+import com.example.model.Memo;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Builds the validators (ETag and Last-Modified) of memo responses and evaluates
+ * the conditional request headers against them, so unchanged memos are answered
+ * with 304 Not Modified and no body.
+ */
+final class MemoValidators {
+
+    /**
+     * Precision of the HTTP dates, in milliseconds.
+     */
+    private static final long HTTP_DATE_PRECISION = 1000L;
+
+    /**
+     * Suffixes the proxies compressing a body append to its ETag.
+     */
+    private static final String[] CODING_SUFFIXES = {"-gzip", "-deflate"};
+
+    /**
+     * Hidden constructor for the utility class.
+     */
+    private MemoValidators() {
+    }
+
+    /**
+     * Read the conditional headers of a request, on the thread serving it.
+     *
+     * @param req the req
+     * @return the conditions
+     */
+    static Conditions conditions(final HttpServletRequest req) {
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = req.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException ex) {
+            ifModifiedSince = -1L;
+        }
+        return new Conditions(req.getHeader(HttpHeaders.IF_NONE_MATCH),
+                ifModifiedSince);
+    }
+
+    /**
+     * Strong ETag of a memo. The version changes on every update of the memo.
+     *
+     * @param id the memo id
+     * @param version the memo version
+     * @return the quoted ETag
+     */
+    static String etag(final Long id, final Long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+
+    /**
+     * Strong ETag of a page of memos, a hash of the ids and versions of the memos
+     * listed and of the total.
+     *
+     * @param memos the memos of the page
+     * @param total the total of records, null when not requested
+     * @return the quoted ETag
+     */
+    static String etag(final List<Memo> memos, final Long total) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Memo memo : memos) {
+            hasher.putLong(memo.getId());
+            if (memo.getVersion() != null) {
+                hasher.putLong(memo.getVersion());
+            }
+        }
+        if (total != null) {
+            hasher.putLong(total);
+        }
+        return "\"" + hasher.hash() + "\"";
+    }
+
+    /**
+     * Last modification of a memo, the update time or else the creation time.
+     *
+     * @param memo the memo
+     * @return the date, null when unknown
+     */
+    static Date lastModified(final Memo memo) {
+        if (memo.getUpdated() != null) {
+            return memo.getUpdated();
+        }
+        return memo.getCreated();
+    }
+
+    /**
+     * Check the conditions of a request against the given validators.
+     * If-None-Match takes precedence, If-Modified-Since is only used without it.
+     *
+     * @param conditions the conditions of the request
+     * @param etag the current ETag
+     * @param lastModified the last modification, null when unknown
+     * @return true when the client copy is current
+     */
+    static boolean isNotModified(final Conditions conditions, final String etag,
+                                 final Date lastModified) {
+        if (conditions.ifNoneMatch != null) {
+            return matches(conditions.ifNoneMatch, etag);
+        }
+        return lastModified != null && conditions.ifModifiedSince >= 0
+                && conditions.ifModifiedSince / HTTP_DATE_PRECISION
+                >= lastModified.getTime() / HTTP_DATE_PRECISION;
+    }
+
+    /**
+     * Gets the validators of a response. The same memo is served as JSON or XML,
+     * so caches have to key it by Accept as well.
+     *
+     * @param etag the current ETag
+     * @param lastModified the last modification, null when unknown
+     * @return the headers
+     */
+    static HttpHeaders validators(final String etag, final Date lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (lastModified != null) {
+            headers.setLastModified(lastModified.getTime());
+        }
+        return headers;
+    }
+
+    /**
+     * Gets the response to a request, 304 Not Modified without a body when the
+     * client copy is current. The validators are set in any case.
+     *
+     * @param <T> the type of the body
+     * @param conditions the conditions of the request
+     * @param etag the current ETag
+     * @param lastModified the last modification, null when unknown
+     * @param body the body
+     * @return the response
+     */
+    static <T> ResponseEntity<T> respond(final Conditions conditions, final String etag,
+                                         final Date lastModified, final T body) {
+        HttpHeaders headers = validators(etag, lastModified);
+        if (isNotModified(conditions, etag, lastModified)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Whether an If-None-Match header lists the ETag, with the weak comparison
+     * that applies to that header. The tags of encoded bodies are accepted too:
+     * the weak form the compression filter sends, and the coding suffix that
+     * proxies compressing on their own append.
+     *
+     * @param ifNoneMatch the header value
+     * @param etag the current ETag
+     * @return true when one of the listed tags matches
+     */
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            for (String suffix : CODING_SUFFIXES) {
+                if (tag.endsWith(suffix + "\"")) {
+                    tag = tag.substring(0, tag.length() - suffix.length() - 1) + "\"";
+                }
+            }
+            if ("*".equals(tag) || etag.equals(tag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The conditional headers of a request, read on the thread serving it so that
+     * the response can be decided on another one.
+     */
+    static final class Conditions {
+
+        /**
+         * The If-None-Match header, null when absent.
+         */
+        private final String ifNoneMatch;
+
+        /**
+         * The If-Modified-Since date in milliseconds, -1 when absent or invalid.
+         */
+        private final long ifModifiedSince;
+
+        /**
+         * Instantiates new Conditions.
+         *
+         * @param noneMatch the If-None-Match header
+         * @param modifiedSince the If-Modified-Since date
+         */
+        private Conditions(final String noneMatch, final long modifiedSince) {
+            this.ifNoneMatch = noneMatch;
+            this.ifModifiedSince = modifiedSince;
+        }
+
+        /**
+         * Whether the request carries a validator to check, if not there is no need
+         * to look the version up before reading the memo.
+         *
+         * @return true when If-None-Match or If-Modified-Since is present
+         */
+        boolean isConditional() {
+            return ifNoneMatch != null || ifModifiedSince >= 0;
+        }
+    }
+}
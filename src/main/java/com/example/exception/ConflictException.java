@@ -0,0 +1,28 @@
+package com.example.exception;
+
+
+/**
+ * Exception thrown when a write is based on an outdated version of the data.
+ */
+public class ConflictException extends MemoRestException {
+
+    /**
+     * Constructs new ConflictException with the specified message.
+     *
+     * @param msg message
+     */
+    public ConflictException(final String msg) {
+        super(msg);
+    }
+
+    /**
+     * Constructs a new ConflictException exception with the specified
+     * detail message and cause.
+     *
+     * @param msg   message.
+     * @param cause cause.
+     */
+    public ConflictException(final String msg, final Throwable cause) {
+        super(msg, cause);
+    }
+}
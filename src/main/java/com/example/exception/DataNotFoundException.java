@@ -2,7 +2,9 @@ package com.example.exception;
 
 
 /**
- * Exception thrown when data is not found.
+ * Exception thrown when data is not found. A miss is an expected outcome, answered
+ * with 404, so the exception carries no stack trace: filling one in on every miss
+ * would cost more than the lookup itself under scans of random ids.
  */
 public class DataNotFoundException extends MemoRestException {
 
@@ -25,4 +27,14 @@ public class DataNotFoundException extends MemoRestException {
     public DataNotFoundException(final String msg, final Throwable cause) {
         super(msg, cause);
     }
+
+    /**
+     * Leave the stack trace empty, the message tells what was not found.
+     *
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
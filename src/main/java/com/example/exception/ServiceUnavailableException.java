@@ -0,0 +1,29 @@
+package com.example.exception;
+
+
+/**
+ * Exception thrown when a request cannot be served now, because too many are
+ * waiting for the database or the database did not answer in time.
+ */
+public class ServiceUnavailableException extends MemoRestException {
+
+    /**
+     * Constructs new ServiceUnavailableException with the specified message.
+     *
+     * @param msg message
+     */
+    public ServiceUnavailableException(final String msg) {
+        super(msg);
+    }
+
+    /**
+     * Constructs a new ServiceUnavailableException exception with the specified
+     * detail message and cause.
+     *
+     * @param msg   message.
+     * @param cause cause.
+     */
+    public ServiceUnavailableException(final String msg, final Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -1,13 +1,16 @@
 package com.example.exception.handler;
 
+import com.example.exception.ConflictException;
 import com.example.exception.DataNotFoundException;
 import com.example.exception.InvalidArgumentException;
 import com.example.exception.InvalidDataException;
 import com.example.exception.MemoRestException;
+import com.example.exception.ServiceUnavailableException;
 import com.example.model.ErrorResponse;
 import com.example.model.ServiceResponse;
 import org.slf4j.Logger;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -32,6 +35,17 @@ public class GeneralExceptionHandler {
      */
     private static final Logger LOG = getLogger(GeneralExceptionHandler.class);
 
+    /**
+     * The code of the not found errors.
+     */
+    private static final String NOT_FOUND_CODE = valueOf(HttpStatus.NOT_FOUND.value());
+
+    /**
+     * The title of the not found errors.
+     */
+    private static final String NOT_FOUND_TITLE =
+            "No entry exists for that given request.";
+
     /**
      * Method to handle MemoREST exceptions.
      *
@@ -54,7 +68,7 @@ public class GeneralExceptionHandler {
         error.setLink(req.getRequestURL().toString());
         error.setDetail(ex.getMessage());
 
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
 
 
@@ -71,14 +85,57 @@ public class GeneralExceptionHandler {
     ServiceResponse<String, String, ErrorResponse> handleDataNotFoundException(
             final DataNotFoundException ex, final HttpServletRequest req,
             final HttpServletResponse resp) {
-        resp.setStatus(HttpStatus.NOT_FOUND.value());
+        return notFound(ex.getMessage(), req, resp);
+    }
+
+
+    /**
+     * Method to handle Conflict exception.
+     *
+     * @param ex exception thrown
+     * @param req the req
+     * @param resp response
+     * @return ResponseEntity service response
+     */
+    @ExceptionHandler(ConflictException.class)
+    @ResponseBody
+    ServiceResponse<String, String, ErrorResponse> handleConflictException(
+            final ConflictException ex, final HttpServletRequest req,
+            final HttpServletResponse resp) {
+        resp.setStatus(HttpStatus.CONFLICT.value());
+        ErrorResponse error = new ErrorResponse();
+        error.setCode(valueOf(HttpStatus.CONFLICT.value()));
+        error.setTitle("The entry was changed by another request.");
+        error.setLink(req.getRequestURL().toString());
+        error.setDetail(ex.getMessage());
+
+        return new ServiceResponse<>(null, null, error);
+    }
+
+
+    /**
+     * Method to handle ServiceUnavailable exception. The client is asked to retry
+     * after a second.
+     *
+     * @param ex exception thrown
+     * @param req the req
+     * @param resp response
+     * @return ResponseEntity service response
+     */
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseBody
+    ServiceResponse<String, String, ErrorResponse> handleServiceUnavailableException(
+            final ServiceUnavailableException ex, final HttpServletRequest req,
+            final HttpServletResponse resp) {
+        resp.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        resp.setHeader(HttpHeaders.RETRY_AFTER, "1");
         ErrorResponse error = new ErrorResponse();
-        error.setCode(valueOf(HttpStatus.NOT_FOUND.value()));
-        error.setTitle("No entry exists for that given request.");
+        error.setCode(valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()));
+        error.setTitle("The service is busy. Please try again later.");
         error.setLink(req.getRequestURL().toString());
         error.setDetail(ex.getMessage());
 
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
 
 
@@ -102,7 +159,7 @@ public class GeneralExceptionHandler {
         error.setDetail(ex.getMessage());
         error.setLink(req.getRequestURL().toString());
 
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
 
 
@@ -127,7 +184,7 @@ public class GeneralExceptionHandler {
         error.setLink(req.getRequestURL().toString());
         error.setDetail(ex.getMessage());
 
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
 
     /**
@@ -150,7 +207,7 @@ public class GeneralExceptionHandler {
         error.setTitle("Invalid Request Data. Please verify.");
         error.setLink(req.getRequestURL().toString());
         error.setDetail(ex.getMessage());
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
 
     /**
@@ -185,7 +242,7 @@ public class GeneralExceptionHandler {
         }
         error.setDetail(detailedMessage);
 
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
 
 
@@ -203,14 +260,28 @@ public class GeneralExceptionHandler {
             final EmptyResultDataAccessException ex, final HttpServletRequest req,
             final HttpServletResponse resp) {
 
+        return notFound(ex.getMessage(), req, resp);
+    }
+
+    /**
+     * Build the response of a miss. Misses are the most frequent errors, so the
+     * code and title are prepared once and only the link and detail are set here.
+     *
+     * @param detail the detail
+     * @param req the req
+     * @param resp response
+     * @return ResponseEntity service response
+     */
+    private static ServiceResponse<String, String, ErrorResponse> notFound(
+            final String detail, final HttpServletRequest req,
+            final HttpServletResponse resp) {
         resp.setStatus(HttpStatus.NOT_FOUND.value());
         ErrorResponse error = new ErrorResponse();
-        error.setCode(valueOf(HttpStatus.NOT_FOUND.value()));
-        error.setTitle("No entry exists for that given request.");
+        error.setCode(NOT_FOUND_CODE);
+        error.setTitle(NOT_FOUND_TITLE);
         error.setLink(req.getRequestURL().toString());
-        error.setDetail(ex.getMessage());
+        error.setDetail(detail);
 
-        return new ServiceResponse(null, null, error);
+        return new ServiceResponse<>(null, null, error);
     }
-
 }
@@ -1,41 +1,227 @@
 package com.example.impl.client;
 
 import com.example.api.client.DAOClient;
+import com.example.exception.ConflictException;
 import com.example.exception.DataNotFoundException;
 import com.example.exception.InvalidDataException;
 import com.example.exception.MemoRestException;
+import com.example.model.ErrorResponse;
 import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import com.example.model.MemoChange;
+import com.example.model.MemoFilter;
+import com.example.model.MemoGetItem;
 import com.example.model.MemoPage;
+import com.example.model.MemoStats;
+import com.example.model.MemoVersion;
 import com.example.repo.MemoRepository;
+import com.example.repo.MemoSpecifications;
+import com.example.routing.ReadYourWrites;
+import com.example.routing.ReplicaRoutingDataSource;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
+import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 
 /**
- * DAO client implementation.
+ * DAO client implementation. Reads run in read only transactions, those of the
+ * repository or of the listings, and are served by the read replicas when there
+ * are; writes go to the primary.
  */
 @Service
 public class DAOClientImpl implements DAOClient {
 
+    /**
+     * The bean validator, used where memos are not validated by the web layer.
+     */
+    private static final Validator VALIDATOR =
+            Validation.buildDefaultValidatorFactory().getValidator();
+
+    /**
+     * The Memo fields a client may patch.
+     */
+    private static final Set<String> PATCHABLE_FIELDS =
+            ImmutableSet.of("title", "author", "text");
+
+    /**
+     * The Memo fields a listing may be sorted by.
+     */
+    private static final Set<String> SORTABLE_FIELDS =
+            ImmutableSet.of("created", "updated", "title");
+
+    /**
+     * The Memo fields a listing may be restricted to.
+     */
+    private static final Set<String> PROJECTABLE_FIELDS = ImmutableSet.of("id",
+            "title", "author", "text", "created", "updated", "version");
+
+    /**
+     * The projection reading the ids alone.
+     */
+    private static final Set<String> ID_ONLY = ImmutableSet.of("id");
+
+    /**
+     * Query of the memo export.
+     */
+    private static final String EXPORT_QUERY = MemoRowMapper.SELECT_MEMOS + " WHERE "
+            + MemoRowMapper.ACTIVE + " ORDER BY ID";
+
+    /**
+     * Query of the change feed, deleted memos included.
+     */
+    private static final String CHANGES_QUERY = "SELECT " + MemoRowMapper.COLUMNS
+            + ", ACTIVE, CHANGE_SEQ FROM MEMOS"
+            + " WHERE (CHANGE_SEQ > ? OR (CHANGE_SEQ = ? AND ID > ?))";
+
+    /**
+     * Order and size of a page of the change feed.
+     */
+    private static final String CHANGES_PAGE = " ORDER BY CHANGE_SEQ, ID LIMIT ?";
+
+    /**
+     * The entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Number of inserts sent to the database per JDBC batch by bulk creates.
+     */
+    @Value("${memo.bulk.batch-size:50}")
+    private int bulkBatchSize;
+
+    /**
+     * Number of memos per UPDATE statement of a bulk delete.
+     */
+    @Value("${memo.delete.batch-size:1000}")
+    private int deleteBatchSize;
+
+    /**
+     * Number of ids per query of a multi-get.
+     */
+    @Value("${memo.mget.chunk-size:500}")
+    private int mgetChunkSize;
+
+    /**
+     * Number of rows fetched per round trip by the export cursor.
+     */
+    @Value("${memo.export.fetch-size:1000}")
+    private int exportFetchSize;
+
+    /**
+     * The data source.
+     */
+    @Autowired
+    private DataSource dataSource;
+
+    /**
+     * The Jdbc template.
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The Memo change sequence.
+     */
+    @Autowired
+    private MemoChangeSequence changeSequence;
+
     /**
      * The Memo repository.
      */
     @Autowired
     private MemoRepository memoRepository;
 
+    /**
+     * The Memo counter.
+     */
+    @Autowired
+    private MemoCounter memoCounter;
+
+    /**
+     * The Memo cache.
+     */
+    @Autowired
+    private MemoCache memoCache;
 
     /**
-     * Create memo.
+     * The Memo search.
+     */
+    @Autowired
+    private MemoSearch memoSearch;
+
+    /**
+     * The memo statistics.
+     */
+    @Autowired
+    private MemoStatistics memoStatistics;
+
+    /**
+     * The group commit of the creates, null unless memo.group-commit.enabled.
+     */
+    @Autowired(required = false)
+    private MemoGroupCommit groupCommit;
+
+    /**
+     * The coalescing of identical concurrent reads.
+     */
+    @Autowired
+    private SingleFlight singleFlight;
+
+    /**
+     * The read-your-writes window, within which the listings are not coalesced.
+     */
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    /**
+     * The routing of the reads, which are not cached when served by a replica.
+     */
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+
+    /**
+     * Create memo. With group commit enabled, a memo without id is inserted in the
+     * batch of the concurrent creates. A version sent with the memo is ignored, so
+     * the memo is inserted at version 0 rather than merged.
      *
      * @param request the request
      *
@@ -44,9 +230,22 @@ public class DAOClientImpl implements DAOClient {
     @Override
     public Memo createMemo(final Memo request) {
 
+        request.setVersion(null);
         try {
-            Memo resp = memoRepository.save(request);
+            Memo resp;
+            if (groupCommit != null && request.getId() == null) {
+                resp = groupCommit.create(request);
+            } else {
+                resp = changeSequence.write(changeSeq -> {
+                    request.setChangeSeq(changeSeq);
+                    return memoRepository.save(request);
+                });
+            }
             if (resp != null) {
+                evict(resp.getId());
+                memoCounter.adjust(1);
+                afterCommit(() -> memoStatistics.created(1));
+                memoSearch.index(resp);
                 return resp;
             }
             throw new MemoRestException("Memo did not get created.");
@@ -58,7 +257,138 @@ public class DAOClientImpl implements DAOClient {
 
 
     /**
-     * Delete memo.
+     * Create memos. Valid memos are persisted in one transaction and flushed every
+     * batch size inserts, so Hibernate sends them as JDBC batches; the persistence
+     * context is cleared at each flush to keep memory flat. The memos share one
+     * position in the change feed. They are indexed and counted once the
+     * transaction has committed.
+     *
+     * @param requests the requests
+     *
+     * @return the outcome of each memo
+     */
+    @Override
+    @Transactional
+    public List<MemoBulkItem> createMemos(final List<Memo> requests) {
+        List<MemoBulkItem> results = new ArrayList<>(requests.size());
+        List<Memo> created = new ArrayList<>(requests.size());
+        try {
+            changeSequence.write(changeSeq -> insert(requests, changeSeq, results,
+                    created));
+        } catch (PersistenceException | ConstraintViolationException ex) {
+            throw new InvalidDataException(ex.getMessage(), ex);
+        }
+        afterCommit(() -> {
+            for (Memo memo : created) {
+                memoSearch.index(memo);
+            }
+            memoStatistics.created(created.size());
+            memoCounter.adjust(created.size());
+        });
+        return results;
+    }
+
+    /**
+     * Insert the valid memos of a bulk create at one position of the change feed.
+     *
+     * @param requests  the requests
+     * @param changeSeq the position of the memos
+     * @param results   the outcome of each memo, filled
+     * @param created   the memos inserted, filled
+     *
+     * @return the number of memos inserted
+     */
+    private Integer insert(final List<Memo> requests, final Long changeSeq,
+                           final List<MemoBulkItem> results, final List<Memo> created) {
+        for (int i = 0; i < requests.size(); i++) {
+            Memo memo = requests.get(i);
+            MemoBulkItem item = new MemoBulkItem();
+            item.setIndex(i);
+            results.add(item);
+
+            Set<ConstraintViolation<Memo>> violations = VALIDATOR.validate(memo);
+            if (!violations.isEmpty()) {
+                item.setError(invalidMemoError(violations));
+                continue;
+            }
+
+            memo.setId(null);
+            memo.setVersion(null);
+            memo.setActive(true);
+            memo.setChangeSeq(changeSeq);
+            entityManager.persist(memo);
+            item.setId(memo.getId());
+            created.add(memo);
+            if (created.size() % bulkBatchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return created.size();
+    }
+
+    /**
+     * Add the position in the change feed to the fields of an update, unless the
+     * database sets it in the statement.
+     *
+     * @param changeSeq the position, null when set by the database
+     * @param updates   the fields to write
+     *
+     * @return the fields
+     */
+    private static Map<String, Object> at(final Long changeSeq,
+                                          final Map<String, Object> updates) {
+        if (changeSeq != null) {
+            updates.put("changeSeq", changeSeq);
+        }
+        return updates;
+    }
+
+    /**
+     * Run an action once the current transaction has committed, so that what
+     * lives outside the database never counts a write that was rolled back. Runs
+     * it at once when there is no transaction.
+     *
+     * @param action the action
+     */
+    private static void afterCommit(final Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCommit() {
+                        action.run();
+                    }
+                });
+    }
+
+    /**
+     * Build the error reported for a memo failing validation.
+     *
+     * @param violations the violations
+     *
+     * @return the error response
+     */
+    private static ErrorResponse invalidMemoError(
+            final Set<ConstraintViolation<Memo>> violations) {
+        StringBuilder detail = new StringBuilder();
+        for (ConstraintViolation<Memo> violation : violations) {
+            detail.append(violation.getMessage()).append('\n');
+        }
+        ErrorResponse error = new ErrorResponse();
+        error.setCode(String.valueOf(HttpStatus.BAD_REQUEST.value()));
+        error.setTitle("Invalid Request Data.");
+        error.setDetail(detail.toString());
+        return error;
+    }
+
+    /**
+     * Delete memo. The row is kept as inactive, the tombstone of the change feed.
      *
      * @param id the id
      *
@@ -66,16 +396,99 @@ public class DAOClientImpl implements DAOClient {
      */
     @Override
     public boolean deleteMemo(final Long id) {
-        try {
-            memoRepository.delete(id);
-        } catch (EmptyResultDataAccessException ex) {
-            throw new DataNotFoundException(ex.getMessage());
-        }
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("active", false);
+        updates.put("updated", new Date());
+
+        update(id, null, updates);
+        memoCounter.adjust(-1);
+        afterCommit(() -> memoStatistics.deleted(1));
         return true;
     }
 
     /**
-     * Gets memo.
+     * Delete memos, by batches of ids.
+     *
+     * @param ids the ids
+     *
+     * @return the number of memos deleted
+     */
+    @Override
+    public int deleteMemos(final List<Long> ids) {
+        int deleted = 0;
+        for (List<Long> batch : Lists.partition(ids, deleteBatchSize)) {
+            deleted += delete(batch);
+        }
+        return deleted;
+    }
+
+    /**
+     * Delete the memos matching a filter. Each batch of ids is read in id order
+     * after the last one, then deleted; a memo changed in between is deleted as
+     * it matched when its batch was read.
+     *
+     * @param filter the filter
+     *
+     * @return the number of memos deleted
+     */
+    @Override
+    public int deleteMemos(final MemoFilter filter) {
+        if (!filter.hasCriteria()) {
+            throw new InvalidDataException(
+                    "Memos are deleted by author or time, not all at once.");
+        }
+        Specification<Memo> spec = MemoSpecifications.matching(filter);
+        int deleted = 0;
+        long afterId = 0;
+        Slice<Memo> batch;
+        do {
+            batch = memoRepository.findSlice(Specifications.where(spec)
+                            .and(MemoSpecifications.idGreaterThan(afterId)),
+                    new PageRequest(0, deleteBatchSize, sort(null)), ID_ONLY);
+            List<Long> ids = new ArrayList<>(batch.getNumberOfElements());
+            for (Memo memo : batch) {
+                ids.add(memo.getId());
+            }
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += delete(ids);
+            afterId = ids.get(ids.size() - 1);
+        } while (batch.hasNext());
+        return deleted;
+    }
+
+    /**
+     * Delete a batch of memos with one UPDATE statement. The rows are kept as
+     * inactive, the tombstones of the change feed, at one position of the feed.
+     * Only the memos the statement changed are counted as deleted.
+     *
+     * @param ids the ids
+     *
+     * @return the number of memos deleted
+     */
+    private int delete(final List<Long> ids) {
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("active", false);
+        updates.put("updated", new Date());
+
+        List<Long> deleted = changeSequence.write(changeSeq ->
+                memoRepository.updateFields(ids, at(changeSeq, updates)));
+        for (Long id : ids) {
+            evict(id);
+        }
+        memoSearch.remove(deleted);
+        memoCounter.adjust(-deleted.size());
+        afterCommit(() -> memoStatistics.deleted(deleted.size()));
+        return deleted.size();
+    }
+
+    /**
+     * Gets memo, from the cache when present. Only the memos read from the primary
+     * are cached, so the cache never holds a memo older than the last write, and a
+     * read only joins the loads going to the same kind of database. The routing is
+     * checked again after the load, in case the read-your-writes window closed
+     * meanwhile.
      *
      * @param id the id
      *
@@ -83,11 +496,132 @@ public class DAOClientImpl implements DAOClient {
      */
     @Override
     public Memo getMemo(final Long id) {
-        Memo memo = memoRepository.findOne(id);
-        if (memo == null) {
+        Memo memo = memoCache.get(id);
+        if (memo != null) {
+            return memo;
+        }
+        boolean replica = routingDataSource.readsReplica();
+        return singleFlight.execute(memoKey(id, replica), () -> {
+            long generation = memoCache.generation();
+            Memo loaded = memoRepository.findOne(id);
+            if (loaded == null) {
+                throw new DataNotFoundException(
+                        "Memo with Id : " + id + " does not exists.");
+            }
+            if (!replica && !routingDataSource.readsReplica()) {
+                memoCache.put(loaded, generation);
+            }
+            return loaded;
+        });
+    }
+
+    /**
+     * Gets the single flight key of the read of a memo.
+     *
+     * @param id      the id
+     * @param replica whether the read goes to a replica
+     *
+     * @return the key
+     */
+    private static Object memoKey(final Long id, final boolean replica) {
+        return Arrays.asList("memo", id, replica);
+    }
+
+    /**
+     * Drop a memo from the cache after a write, and forget its read in flight.
+     *
+     * @param id the id
+     */
+    private void evict(final Long id) {
+        memoCache.invalidate(id);
+        singleFlight.forget(memoKey(id, false));
+        singleFlight.forget(memoKey(id, true));
+    }
+
+    /**
+     * Gets memos, from the cache when present and else with one IN query per chunk
+     * of ids, all in one read only transaction. The memos read are cached unless
+     * read from a replica.
+     *
+     * @param ids the ids
+     *
+     * @return the memo or the error of each id
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<MemoGetItem> getMemos(final List<Long> ids) {
+        boolean cacheable = !routingDataSource.readsReplica();
+        Map<Long, Memo> found = new HashMap<>();
+        Set<Long> misses = new LinkedHashSet<>();
+        for (Long id : ids) {
+            Memo memo = memoCache.get(id);
+            if (memo != null) {
+                found.put(id, memo);
+            } else {
+                misses.add(id);
+            }
+        }
+        long generation = memoCache.generation();
+        List<Memo> loaded = new ArrayList<>(misses.size());
+        for (List<Long> chunk : Iterables.partition(misses, mgetChunkSize)) {
+            for (Memo memo : memoRepository.findAll(chunk)) {
+                loaded.add(memo);
+                found.put(memo.getId(), memo);
+            }
+        }
+        if (cacheable && !routingDataSource.readsReplica()) {
+            for (Memo memo : loaded) {
+                memoCache.put(memo, generation);
+            }
+        }
+
+        List<MemoGetItem> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            MemoGetItem item = new MemoGetItem();
+            item.setId(id);
+            Memo memo = found.get(id);
+            if (memo != null) {
+                item.setMemo(memo);
+            } else {
+                item.setError(notFoundError(id));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Build the error reported for a missing memo.
+     *
+     * @param id the id
+     *
+     * @return the error response
+     */
+    private static ErrorResponse notFoundError(final Long id) {
+        ErrorResponse error = new ErrorResponse();
+        error.setCode(String.valueOf(HttpStatus.NOT_FOUND.value()));
+        error.setTitle("No entry exists for that given request.");
+        error.setDetail("Memo with Id : " + id + " does not exists.");
+        return error;
+    }
+
+    /**
+     * Gets memo version, from the cached memo when there is one.
+     *
+     * @param id the id
+     * @return the memo version
+     */
+    @Override
+    public MemoVersion getMemoVersion(final Long id) {
+        Memo memo = memoCache.get(id);
+        if (memo != null) {
+            return new MemoVersion(memo.getId(), memo.getVersion(), memo.getUpdated());
+        }
+        MemoVersion version = memoRepository.findVersionById(id);
+        if (version == null) {
             throw new DataNotFoundException("Memo with Id : " + id + " does not exists.");
         }
-        return memo;
+        return version;
     }
 
     /**
@@ -100,7 +634,7 @@ public class DAOClientImpl implements DAOClient {
     @SuppressWarnings("deprecation")
     @Override
     public boolean existsMemo(final Long id) {
-        return memoRepository.exists(id);
+        return memoCache.get(id) != null || memoRepository.exists(id);
     }
 
     /**
@@ -114,7 +648,7 @@ public class DAOClientImpl implements DAOClient {
     @Override
     public List<Memo> getAllMemos(final int pageNo, final int limit) {
 
-        Page pageOfMemos = memoRepository.findAll(new PageRequest(pageNo, limit));
+        Page<Memo> pageOfMemos = memoRepository.findAll(new PageRequest(pageNo, limit));
 
         List<Memo> memos = pageOfMemos.getContent();
 
@@ -125,6 +659,55 @@ public class DAOClientImpl implements DAOClient {
         return memos;
     }
 
+    /**
+     * Stream memos. The rows are read with plain JDBC from a forward only cursor
+     * inside a read only transaction, which PostgreSQL needs to honour the fetch
+     * size instead of loading the whole result. The template joins the connection
+     * of the transaction.
+     *
+     * @param consumer the consumer
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void streamMemos(final Consumer<Memo> consumer) {
+        JdbcTemplate cursor = new JdbcTemplate(dataSource);
+        cursor.setFetchSize(exportFetchSize);
+        cursor.query(EXPORT_QUERY, (RowCallbackHandler) row ->
+                consumer.accept(MemoRowMapper.INSTANCE.mapRow(row, row.getRow())));
+    }
+
+    /**
+     * Gets changes. The feed is read with plain JDBC, the entity queries leave out
+     * the deleted memos. It stops below the writes still in flight, which could
+     * otherwise commit behind the position the client moves on to.
+     *
+     * @param sinceChangeSeq the position of the last change seen
+     * @param sinceId        the memo id of the last change seen
+     * @param limit          the limit
+     * @param includeDeleted whether to list the deleted memos
+     *
+     * @return the changes
+     */
+    @Override
+    public List<MemoChange> getChanges(final long sinceChangeSeq, final long sinceId,
+                                       final int limit, final boolean includeDeleted) {
+        String query = CHANGES_QUERY + " AND " + changeSequence.visible();
+        if (!includeDeleted) {
+            query += " AND " + MemoRowMapper.ACTIVE;
+        }
+        return jdbcTemplate.query(query + CHANGES_PAGE, (row, rowNum) -> {
+            MemoChange change = new MemoChange();
+            change.setId(row.getLong("ID"));
+            change.setChangeSeq(row.getLong("CHANGE_SEQ"));
+            if (row.getBoolean("ACTIVE")) {
+                change.setMemo(MemoRowMapper.INSTANCE.mapRow(row, rowNum));
+            } else {
+                change.setDeleted(true);
+            }
+            return change;
+        }, sinceChangeSeq, sinceChangeSeq, sinceId, limit);
+    }
+
     /**
      * Gets all memos by pagination.
      *
@@ -133,29 +716,228 @@ public class DAOClientImpl implements DAOClient {
      *
      * @return the all memos
      */
+    @Override
+    @Transactional(readOnly = true)
     public MemoPage getMemosForPage(final int pageNo, final int limit) {
+        return getMemosForPage(pageNo, limit, true);
+    }
+
+    /**
+     * Gets all memos by pagination, in id order.
+     *
+     * @param pageNo       the page no
+     * @param limit        the limit
+     * @param includeTotal whether to fill the totals
+     *
+     * @return the all memos
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemoPage getMemosForPage(final int pageNo, final int limit,
+                                    final boolean includeTotal) {
+        return getMemosForPage(pageNo, limit, includeTotal, new MemoFilter());
+    }
+
+    /**
+     * Gets the memos matching a filter by pagination. The page is read as a slice;
+     * the totals are only computed when asked for, from the memo counter when
+     * nothing is filtered and with a count query otherwise. The listing is one
+     * read only transaction, so it is served by a replica when there are.
+     * Identical concurrent listings share one read, but for a client within its
+     * read-your-writes window, whose listing must start after its own write.
+     *
+     * @param pageNo       the page no
+     * @param limit        the limit
+     * @param includeTotal whether to fill the totals
+     * @param filter       the filter
+     *
+     * @return the all memos
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemoPage getMemosForPage(final int pageNo, final int limit,
+                                    final boolean includeTotal,
+                                    final MemoFilter filter) {
+        if (readYourWrites.isOpen()) {
+            return readPage(pageNo, limit, includeTotal, filter);
+        }
+        return singleFlight.execute(Arrays.asList("page", pageNo, limit, includeTotal,
+                filter), () -> readPage(pageNo, limit, includeTotal, filter));
+    }
+
+    /**
+     * Read a page of the memos matching a filter.
+     *
+     * @param pageNo       the page no
+     * @param limit        the limit
+     * @param includeTotal whether to fill the totals
+     * @param filter       the filter
+     *
+     * @return the page
+     */
+    private MemoPage readPage(final int pageNo, final int limit,
+                              final boolean includeTotal, final MemoFilter filter) {
         MemoPage response = new MemoPage();
 
-        Page pageOfMemos = memoRepository.findAll(new PageRequest(pageNo, limit));
+        Specification<Memo> spec = MemoSpecifications.matching(filter);
+        Slice<Memo> sliceOfMemos = memoRepository.findSlice(spec,
+                new PageRequest(pageNo, limit, sort(filter.getSort())),
+                fields(filter.getFields()));
 
-        List<Memo> memos = pageOfMemos.getContent();
+        List<Memo> memos = sliceOfMemos.getContent();
+
+        if (isEmpty(memos)) {
+            throw new DataNotFoundException(
+                    "No memos found for requested page parameters.");
+        }
+        response.setMemoList(memos);
+
+        if (includeTotal) {
+            long totalMemos;
+            if (!filter.hasCriteria()) {
+                totalMemos = memoCounter.get();
+            } else {
+                totalMemos = memoRepository.count(spec);
+            }
+            response.setTotalMemosSize(totalMemos);
+            response.setTotalPages((int) ((totalMemos + limit - 1) / limit));
+        }
+
+        if (sliceOfMemos.hasPrevious()) {
+            response.setPrevPageNumber(sliceOfMemos.getNumber() - 1);
+        }
+        if (sliceOfMemos.hasNext()) {
+            response.setNextPageNumber(sliceOfMemos.getNumber() + 1);
+        }
+        return response;
+    }
+
+    /**
+     * Gets memos following the given id.
+     *
+     * @param afterId the memo identifier to continue after
+     * @param limit   the limit
+     *
+     * @return the memos for page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemoPage getMemosAfter(final long afterId, final int limit) {
+        return getMemosAfter(afterId, limit, new MemoFilter());
+    }
+
+    /**
+     * Gets the memos matching a filter following the given id. Fetches one extra
+     * row to decide whether there is a next page.
+     *
+     * @param afterId the memo identifier to continue after
+     * @param limit   the limit
+     * @param filter  the filter, without order
+     *
+     * @return the memos for page
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public MemoPage getMemosAfter(final long afterId, final int limit,
+                                  final MemoFilter filter) {
+        if (filter.getSort() != null) {
+            throw new InvalidDataException(
+                    "Memos listed by cursor come in id order, sort pages instead.");
+        }
+        MemoPage response = new MemoPage();
+
+        Slice<Memo> sliceOfMemos = memoRepository.findSlice(
+                Specifications.where(MemoSpecifications.matching(filter))
+                        .and(MemoSpecifications.idGreaterThan(afterId)),
+                new PageRequest(0, limit, sort(null)), fields(filter.getFields()));
+
+        List<Memo> memos = sliceOfMemos.getContent();
 
         if (isEmpty(memos)) {
             throw new DataNotFoundException(
                     "No memos found for requested page parameters.");
         }
+
+        if (sliceOfMemos.hasNext()) {
+            response.setNextAfterId(memos.get(memos.size() - 1).getId());
+        }
         response.setMemoList(memos);
+        return response;
+    }
 
-        Long totalMemos = pageOfMemos.getTotalElements();
-        response.setTotalMemosSize(totalMemos);
-        response.setTotalPages(pageOfMemos.getTotalPages());
+    /**
+     * Build the order of a listing, ties are broken by id so pages are stable.
+     *
+     * @param sort the sort parameter, null for id order
+     *
+     * @return the sort
+     */
+    private static Sort sort(final String sort) {
+        if (sort == null) {
+            return new Sort(Sort.Direction.ASC, "id");
+        }
+        Sort.Direction direction = Sort.Direction.ASC;
+        String field = sort;
+        if (sort.startsWith("-")) {
+            direction = Sort.Direction.DESC;
+            field = sort.substring(1);
+        }
+        if (!SORTABLE_FIELDS.contains(field)) {
+            throw new InvalidDataException(
+                    "Memos can only be sorted by created, updated or title.");
+        }
+        return new Sort(direction, field, "id");
+    }
 
-        if (pageOfMemos.hasPrevious()) {
-            response.setPrevPageNumber(pageOfMemos.getNumber() - 1);
+    /**
+     * Check the fields of a projection.
+     *
+     * @param fields the fields, null for whole memos
+     *
+     * @return the fields
+     */
+    private static Set<String> fields(final Set<String> fields) {
+        if (fields == null) {
+            return null;
         }
-        if (pageOfMemos.hasNext()) {
-            response.setNextPageNumber(pageOfMemos.getNumber() + 1);
+        for (String field : fields) {
+            if (!PROJECTABLE_FIELDS.contains(field)) {
+                throw new InvalidDataException("Memo field " + field
+                        + " cannot be listed, use " + PROJECTABLE_FIELDS + ".");
+            }
         }
+        return fields;
+    }
+
+    /**
+     * Search memos. One extra match is fetched to decide whether there is a next
+     * page, no total is computed.
+     *
+     * @param query  the query
+     * @param pageNo the page no
+     * @param limit  the limit
+     *
+     * @return the memos for page
+     */
+    @Override
+    public MemoPage searchMemos(final String query, final int pageNo, final int limit) {
+        MemoPage response = new MemoPage();
+
+        List<Memo> memos = memoSearch.search(query, pageNo * limit, limit + 1);
+
+        if (isEmpty(memos)) {
+            throw new DataNotFoundException(
+                    "No memos found for requested search parameters.");
+        }
+
+        if (memos.size() > limit) {
+            memos = memos.subList(0, limit);
+            response.setNextPageNumber(pageNo + 1);
+        }
+        if (pageNo > 0) {
+            response.setPrevPageNumber(pageNo - 1);
+        }
+        response.setMemoList(memos);
         return response;
     }
 
@@ -169,6 +951,17 @@ public class DAOClientImpl implements DAOClient {
         return (int) memoRepository.count();
     }
 
+    /**
+     * Gets the statistics of the memos, as of the last refresh adjusted by the
+     * writes since.
+     *
+     * @return the statistics
+     */
+    @Override
+    public MemoStats getStats() {
+        return memoStatistics.get();
+    }
+
     /**
      * Update memo.
      *
@@ -179,28 +972,99 @@ public class DAOClientImpl implements DAOClient {
     @Override
     public boolean updateMemo(final Memo memo) {
 
-        if (!existsMemo(memo.getId())) {
-            throw new DataNotFoundException(
-                    "Memo " + memo.getTitle() + " does not exists for update.");
-        }
-        Memo updated = memoRepository.save(memo);
+        Map<String, Object> updates = new LinkedHashMap<>();
+        updates.put("title", memo.getTitle());
+        updates.put("author", memo.getAuthor());
+        updates.put("text", memo.getText());
+        updates.put("updated", new Date());
 
-        if (updated == null) {
-            throw new DataNotFoundException(
-                    "Updated Memo " + memo.getTitle() + " does not exists.");
-        }
+        update(memo.getId(), memo.getVersion(), updates);
+        afterCommit(memoStatistics::updated);
         return true;
     }
 
 
     /**
-     * Patch memo.
+     * Patch memo. Only the supplied fields are validated, against the constraints
+     * of the Memo model, and written with one UPDATE statement; the memo is not
+     * loaded.
      *
      * @param id     the id
      * @param fields the fields
      */
     @Override
     public void patchMemo(final long id, final Map<String, Object> fields) {
+        if (fields == null || fields.isEmpty()) {
+            throw new InvalidDataException("No Memo fields to update.");
+        }
+
+        Long version = null;
+        Map<String, Object> updates = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            String name = field.getKey();
+            Object value = field.getValue();
+            if ("id".equals(name)) {
+                if (value == null || !String.valueOf(id).equals(value.toString())) {
+                    throw new InvalidDataException(
+                            "Requested Memo ID from Url not matching with Body.");
+                }
+                continue;
+            }
+            if ("version".equals(name)) {
+                if (!(value instanceof Number)) {
+                    throw new InvalidDataException("Memo version must be a number.");
+                }
+                version = ((Number) value).longValue();
+                continue;
+            }
+            if (!PATCHABLE_FIELDS.contains(name)) {
+                throw new InvalidDataException(
+                        "Memo field " + name + " cannot be updated.");
+            }
+            if (value != null && !(value instanceof String)) {
+                throw new InvalidDataException(
+                        "Memo field " + name + " must be a string.");
+            }
+            Set<ConstraintViolation<Memo>> violations =
+                    VALIDATOR.validateValue(Memo.class, name, value);
+            if (!violations.isEmpty()) {
+                throw new InvalidDataException(violations.iterator().next().getMessage());
+            }
+            updates.put(name, value);
+        }
+        if (updates.isEmpty()) {
+            throw new InvalidDataException("No Memo fields to update.");
+        }
+        updates.put("updated", new Date());
+
+        update(id, version, updates);
+        afterCommit(memoStatistics::updated);
+    }
 
+    /**
+     * Write the fields of a memo with one conditional UPDATE, which also moves the
+     * memo to the end of the change feed. The affected row count tells whether it
+     * worked; only when it did not is the memo looked up, to tell a missing memo
+     * from a concurrent update.
+     *
+     * @param id      the id
+     * @param version the version the client read, null to overwrite any version
+     * @param updates the fields to write
+     */
+    private void update(final Long id, final Long version,
+                        final Map<String, Object> updates) {
+        int updated = changeSequence.write(changeSeq ->
+                memoRepository.updateFields(id, version, at(changeSeq, updates)));
+        evict(id);
+        if (updated > 0) {
+            memoSearch.refresh(id);
+            return;
+        }
+        if (version != null && memoRepository.exists(id)) {
+            throw new ConflictException("Memo with Id : " + id
+                    + " was updated by another request, version " + version
+                    + " is outdated.");
+        }
+        throw new DataNotFoundException("Memo with Id : " + id + " does not exists.");
     }
 }
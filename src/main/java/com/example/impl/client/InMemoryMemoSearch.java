@@ -0,0 +1,342 @@
+package com.example.impl.client;
+
+import com.example.model.Memo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Memo search with an inverted index kept in process, for the databases without
+ * full-text search such as the embedded one. The index is built from the table on
+ * the first search and then follows the writes of this instance; the writes take
+ * the lock of the index before checking whether it is built, so one made while it
+ * is read from the table waits and is applied after the read. Words are matched
+ * as lower case tokens, without stemming; a word counts three times in the title,
+ * twice in the author and once in the text.
+ */
+class InMemoryMemoSearch implements MemoSearch {
+
+    /**
+     * Weight of a word of the title.
+     */
+    private static final int TITLE_WEIGHT = 3;
+
+    /**
+     * Weight of a word of the author.
+     */
+    private static final int AUTHOR_WEIGHT = 2;
+
+    /**
+     * Weight of a word of the text.
+     */
+    private static final int TEXT_WEIGHT = 1;
+
+    /**
+     * Separator of the words.
+     */
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Query of one memo.
+     */
+    private static final String MEMO_QUERY = MemoRowMapper.SELECT_MEMOS + " WHERE "
+            + MemoRowMapper.ACTIVE + " AND ID = ?";
+
+    /**
+     * Query of the memos of a page of matches.
+     */
+    private static final String MEMOS_QUERY = MemoRowMapper.SELECT_MEMOS + " WHERE "
+            + MemoRowMapper.ACTIVE + " AND ID IN (:ids)";
+
+    /**
+     * Query of all the memos, to build the index.
+     */
+    private static final String ALL_QUERY = MemoRowMapper.SELECT_MEMOS + " WHERE "
+            + MemoRowMapper.ACTIVE;
+
+    /**
+     * Order of the matches, best score first and then by id.
+     */
+    private static final Comparator<Map.Entry<Long, Integer>> RANKING =
+            Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue)
+                    .reversed()
+                    .thenComparing(Map.Entry::getKey);
+
+    /**
+     * The Jdbc template.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The lock of the index, searches share it and writes take it alone.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The score of each word in each memo, by word and memo id.
+     */
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+
+    /**
+     * The words of each memo, to remove them when the memo changes.
+     */
+    private final Map<Long, Set<String>> words = new HashMap<>();
+
+    /**
+     * Whether the index has been built from the table, set under the write lock.
+     */
+    private volatile boolean loaded;
+
+    /**
+     * Instantiates a new In memory memo search.
+     *
+     * @param template the jdbc template
+     */
+    InMemoryMemoSearch(final JdbcTemplate template) {
+        this.jdbcTemplate = template;
+    }
+
+    /**
+     * Search.
+     *
+     * @param query  the query
+     * @param offset the offset
+     * @param limit  the limit
+     * @return the memos
+     */
+    @Override
+    public List<Memo> search(final String query, final int offset, final int limit) {
+        Set<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        load();
+
+        List<Map.Entry<Long, Integer>> ranked;
+        lock.readLock().lock();
+        try {
+            Map<Long, Integer> scores = null;
+            for (String term : terms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    return Collections.emptyList();
+                }
+                if (scores == null) {
+                    scores = new HashMap<>(posting);
+                    continue;
+                }
+                Iterator<Map.Entry<Long, Integer>> it = scores.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Long, Integer> score = it.next();
+                    Integer more = posting.get(score.getKey());
+                    if (more == null) {
+                        it.remove();
+                    } else {
+                        score.setValue(score.getValue() + more);
+                    }
+                }
+            }
+            ranked = new ArrayList<>(scores.entrySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (offset >= ranked.size()) {
+            return Collections.emptyList();
+        }
+        ranked.sort(RANKING);
+
+        List<Long> ids = new ArrayList<>(limit);
+        for (Map.Entry<Long, Integer> match
+                : ranked.subList(offset, Math.min(ranked.size(), offset + limit))) {
+            ids.add(match.getKey());
+        }
+        return read(ids);
+    }
+
+    /**
+     * Index a memo, unless the index is not built yet and will read it.
+     *
+     * @param memo the memo
+     */
+    @Override
+    public void index(final Memo memo) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                remove(memo.getId());
+                add(memo);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read a memo again and index it, or drop it when it is gone, unless the index
+     * is not built yet and will read it. The memo is read under the lock, so that
+     * the index is left with the last state read.
+     *
+     * @param id the id
+     */
+    @Override
+    public void refresh(final Long id) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                remove(id);
+                for (Memo memo : jdbcTemplate.query(MEMO_QUERY, MemoRowMapper.INSTANCE,
+                        id)) {
+                    add(memo);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop memos deleted in bulk, unless the index is not built yet.
+     *
+     * @param ids the memo ids
+     */
+    @Override
+    public void remove(final Collection<Long> ids) {
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                for (Long id : ids) {
+                    remove(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Build the index from the table, once.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                jdbcTemplate.query(ALL_QUERY, (RowCallbackHandler) row ->
+                        add(MemoRowMapper.INSTANCE.mapRow(row, row.getRow())));
+                loaded = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read the memos of a page of matches, in the order of the ids.
+     *
+     * @param ids the ids
+     * @return the memos still stored
+     */
+    private List<Memo> read(final List<Long> ids) {
+        Map<Long, Memo> byId = new HashMap<>();
+        for (Memo memo : new NamedParameterJdbcTemplate(jdbcTemplate).query(MEMOS_QUERY,
+                Collections.singletonMap("ids", ids), MemoRowMapper.INSTANCE)) {
+            byId.put(memo.getId(), memo);
+        }
+        List<Memo> memos = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Memo memo = byId.get(id);
+            if (memo != null) {
+                memos.add(memo);
+            }
+        }
+        return memos;
+    }
+
+    /**
+     * Add the words of a memo to the index, under the write lock.
+     *
+     * @param memo the memo
+     */
+    private void add(final Memo memo) {
+        Map<String, Integer> scores = new HashMap<>();
+        score(scores, memo.getTitle(), TITLE_WEIGHT);
+        score(scores, memo.getAuthor(), AUTHOR_WEIGHT);
+        score(scores, memo.getText(), TEXT_WEIGHT);
+        for (Map.Entry<String, Integer> score : scores.entrySet()) {
+            postings.computeIfAbsent(score.getKey(), term -> new HashMap<>())
+                    .put(memo.getId(), score.getValue());
+        }
+        words.put(memo.getId(), scores.keySet());
+    }
+
+    /**
+     * Remove the words of a memo from the index, under the write lock.
+     *
+     * @param id the memo id
+     */
+    private void remove(final Long id) {
+        Set<String> terms = words.remove(id);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Map<Long, Integer> posting = postings.get(term);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    /**
+     * Add the weight of a field to the score of each of its words.
+     *
+     * @param scores the scores by word
+     * @param field  the field value
+     * @param weight the weight of the field
+     */
+    private static void score(final Map<String, Integer> scores, final String field,
+                              final int weight) {
+        if (field == null) {
+            return;
+        }
+        for (String term : NON_WORD.split(field.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                scores.merge(term, weight, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * Split a query into distinct lower case words.
+     *
+     * @param query the query
+     * @return the words
+     */
+    private static Set<String> tokenize(final String query) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String term : NON_WORD.split(query.toLowerCase(Locale.ROOT))) {
+            if (!term.isEmpty()) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.impl.client;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * The change sequence of the databases without transaction ids, such as H2.
+ * Positions are counted in process from the last one stored, and kept in flight
+ * until the transaction of their write completes; the changes served stop below
+ * the first position in flight. Only the writes of this instance are known, so
+ * it suits a single instance.
+ */
+class InProcessChangeSequence implements MemoChangeSequence {
+
+    /**
+     * Query of the last position stored.
+     */
+    private static final String LAST_QUERY =
+            "SELECT COALESCE(MAX(CHANGE_SEQ), 0) FROM MEMOS";
+
+    /**
+     * The positions in flight, guarded by this.
+     */
+    private final NavigableSet<Long> inFlight = new TreeSet<>();
+
+    /**
+     * The last position handed out, guarded by this.
+     */
+    private long last;
+
+    /**
+     * Instantiates a new In process change sequence.
+     *
+     * @param jdbcTemplate the jdbc template, to read the last position stored
+     */
+    InProcessChangeSequence(final JdbcTemplate jdbcTemplate) {
+        this.last = jdbcTemplate.queryForObject(LAST_QUERY, Long.class);
+    }
+
+    /**
+     * Run a write at the next position, kept in flight until its transaction
+     * completes.
+     *
+     * @param <T>   the type of the result
+     * @param write the write
+     * @return the result of the write
+     */
+    @Override
+    public <T> T write(final Function<Long, T> write) {
+        long position = begin();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCompletion(final int status) {
+                            end(position);
+                        }
+                    });
+            return write.apply(position);
+        }
+        try {
+            return write.apply(position);
+        } finally {
+            end(position);
+        }
+    }
+
+    /**
+     * Gets the condition of the changes below the first position in flight.
+     *
+     * @return the condition
+     */
+    @Override
+    public synchronized String visible() {
+        long watermark = last;
+        if (!inFlight.isEmpty()) {
+            watermark = inFlight.first() - 1;
+        }
+        return "CHANGE_SEQ <= " + watermark;
+    }
+
+    /**
+     * Hand out the next position, in flight.
+     *
+     * @return the position
+     */
+    private synchronized long begin() {
+        last++;
+        inFlight.add(last);
+        return last;
+    }
+
+    /**
+     * End a position in flight.
+     *
+     * @param position the position
+     */
+    private synchronized void end(final long position) {
+        inFlight.remove(position);
+    }
+}
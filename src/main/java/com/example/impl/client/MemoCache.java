@@ -0,0 +1,172 @@
+package com.example.impl.client;
+
+import com.example.model.Memo;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.Striped;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Bounded in-process cache of memos by id. Entries are evicted by size and by time
+ * to live, and dropped by every write on the memo. A load that overlaps a write
+ * is not cached, so a row read before the write cannot be put back after it.
+ * Hit, miss and eviction counters are published on the metrics endpoint.
+ */
+@Component
+class MemoCache implements PublicMetrics {
+
+    /**
+     * Number of locks the memo ids are spread over.
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * The cache.
+     */
+    private final Cache<Long, Memo> cache;
+
+    /**
+     * The generation of the last invalidation of the recently written memos.
+     */
+    private final Cache<Long, Long> invalidations;
+
+    /**
+     * The generation of the last invalidation, incremented by each one.
+     */
+    private final AtomicLong clock = new AtomicLong();
+
+    /**
+     * The highest generation dropped from the invalidations; loads started before
+     * it may have missed an invalidation and are not cached.
+     */
+    private final AtomicLong forgotten = new AtomicLong();
+
+    /**
+     * The locks making the check of a load and the invalidation of its memo atomic.
+     */
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    /**
+     * Instantiates a new Memo cache.
+     *
+     * @param maxSize    the maximum number of memos kept, 0 disables the cache
+     * @param ttlSeconds how long a memo is kept after being loaded
+     */
+    @Autowired
+    MemoCache(@Value("${memo.cache.max-size:10000}") final long maxSize,
+              @Value("${memo.cache.ttl-seconds:60}") final long ttlSeconds) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        this.invalidations = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .removalListener((RemovalNotification<Long, Long> removed) -> {
+                    if (removed.getCause() != RemovalCause.REPLACED) {
+                        forgotten.accumulateAndGet(removed.getValue(), Math::max);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Gets a cached memo.
+     *
+     * @param id the id
+     * @return the memo or null when not cached
+     */
+    Memo get(final Long id) {
+        return cache.getIfPresent(id);
+    }
+
+    /**
+     * Gets the generation to pass to {@link #put(Memo, long)}, taken before the
+     * memo is read from the repository.
+     *
+     * @return the generation
+     */
+    long generation() {
+        return clock.get();
+    }
+
+    /**
+     * Cache a memo loaded from the repository, unless the memo was invalidated
+     * since the load started: the row read may then be older than the write, and
+     * would be served until it expires.
+     *
+     * @param memo       the memo
+     * @param generation the generation taken before the load
+     */
+    void put(final Memo memo, final long generation) {
+        Lock lock = locks.get(memo.getId());
+        lock.lock();
+        try {
+            Long invalidated = invalidations.getIfPresent(memo.getId());
+            if (forgotten.get() > generation
+                    || invalidated != null && invalidated > generation) {
+                return;
+            }
+            cache.put(memo.getId(), memo);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop a memo after a write, and turn away the loads of it in progress.
+     *
+     * @param id the id
+     */
+    void invalidate(final Long id) {
+        Lock lock = locks.get(id);
+        lock.lock();
+        try {
+            invalidations.put(id, clock.incrementAndGet());
+            cache.invalidate(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the cache statistics.
+     *
+     * @return the stats
+     */
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Cache metrics.
+     *
+     * @return the metrics
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = cache.stats();
+        Collection<Metric<?>> metrics = newArrayList();
+        metrics.add(new Metric<Long>("memo.cache.size", cache.size()));
+        metrics.add(new Metric<Long>("memo.cache.hits", stats.hitCount()));
+        metrics.add(new Metric<Long>("memo.cache.misses", stats.missCount()));
+        metrics.add(new Metric<Long>("memo.cache.evictions", stats.evictionCount()));
+        metrics.add(new Metric<Double>("memo.cache.hitRate", stats.hitRate()));
+        return metrics;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.impl.client;
+
+import java.util.function.Function;
+
+/**
+ * Positions of the writes in the change feed. A write gets its position within
+ * its own transaction, and the feed only serves the positions below the writes
+ * still in flight, so that a change cannot appear behind a position a client
+ * has already read past.
+ */
+interface MemoChangeSequence {
+
+    /**
+     * Run a write at the next position of the feed. The position is in flight
+     * until the transaction of the write completes: the one of the caller when
+     * there is one, else the one of the write itself.
+     *
+     * @param <T>   the type of the result
+     * @param write the write, given the position to set on the rows it writes, or
+     *              null when the database sets it in the statement
+     * @return the result of the write
+     */
+    <T> T write(Function<Long, T> write);
+
+    /**
+     * Gets the SQL condition on CHANGE_SEQ of the changes that may be served, the
+     * ones no write in flight can precede.
+     *
+     * @return the condition
+     */
+    String visible();
+}
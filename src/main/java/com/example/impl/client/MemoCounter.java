@@ -0,0 +1,75 @@
+package com.example.impl.client;
+
+import com.example.repo.MemoRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate memo counter. The count is read from the database at most once per
+ * time to live and adjusted in between by the writes of this instance, so listing
+ * totals do not cost a COUNT(*) per request.
+ */
+@Component
+class MemoCounter {
+
+    /**
+     * Marker for a count that has not been read yet.
+     */
+    private static final long UNKNOWN = -1L;
+
+    /**
+     * The Memo repository.
+     */
+    @Autowired
+    private MemoRepository memoRepository;
+
+    /**
+     * How long a count read from the database is trusted, in milliseconds.
+     */
+    @Value("${memo.count.ttl-ms:5000}")
+    private long ttlMillis;
+
+    /**
+     * The current count.
+     */
+    private final AtomicLong count = new AtomicLong(UNKNOWN);
+
+    /**
+     * When the current count has to be read again.
+     */
+    private volatile long expiresAt;
+
+    /**
+     * Gets the approximate count of memos.
+     *
+     * @return the count
+     */
+    long get() {
+        long now = System.currentTimeMillis();
+        long current = count.get();
+        if (current != UNKNOWN && now < expiresAt) {
+            return current;
+        }
+        current = memoRepository.count();
+        count.set(current);
+        expiresAt = now + ttlMillis;
+        return current;
+    }
+
+    /**
+     * Adjust the count after a write.
+     *
+     * @param delta the number of memos added, negative when removed
+     */
+    void adjust(final long delta) {
+        count.getAndUpdate(current -> {
+            if (current == UNKNOWN) {
+                return current;
+            }
+            return Math.max(0L, current + delta);
+        });
+    }
+}
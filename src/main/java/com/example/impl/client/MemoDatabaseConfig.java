@@ -0,0 +1,85 @@
+package com.example.impl.client;
+
+import org.slf4j.Logger;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Picks the memo search and the change sequence for the database in use: the
+ * PostgreSQL full-text search and transaction ids, or the in-process index and
+ * positions for the other databases.
+ */
+@Configuration
+class MemoDatabaseConfig {
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOG = getLogger(MemoDatabaseConfig.class);
+
+    /**
+     * Product name reported by the PostgreSQL driver.
+     */
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    /**
+     * The memo search.
+     *
+     * @param jdbcTemplate the jdbc template
+     * @return the memo search
+     * @throws MetaDataAccessException when the database cannot be identified
+     */
+    @Bean
+    MemoSearch memoSearch(final JdbcTemplate jdbcTemplate)
+            throws MetaDataAccessException {
+        Object product = product(jdbcTemplate);
+        if (POSTGRESQL.equals(product)) {
+            return new PostgresMemoSearch(jdbcTemplate);
+        }
+        LOG.info("No full-text search on {}, memos are indexed in process.", product);
+        return new InMemoryMemoSearch(jdbcTemplate);
+    }
+
+    /**
+     * The change sequence.
+     *
+     * @param jdbcTemplate         the jdbc template
+     * @param entityManagerFactory the entity manager factory, which creates the
+     *                             schema read by the in-process sequence
+     * @return the change sequence
+     * @throws MetaDataAccessException when the database cannot be identified
+     */
+    @Bean
+    MemoChangeSequence memoChangeSequence(final JdbcTemplate jdbcTemplate,
+                                          final EntityManagerFactory
+                                                  entityManagerFactory)
+            throws MetaDataAccessException {
+        Object product = product(jdbcTemplate);
+        if (POSTGRESQL.equals(product)) {
+            return new PostgresChangeSequence();
+        }
+        LOG.info("No transaction ids on {}, change positions are counted in process.",
+                product);
+        return new InProcessChangeSequence(jdbcTemplate);
+    }
+
+    /**
+     * Gets the product name of the database.
+     *
+     * @param jdbcTemplate the jdbc template
+     * @return the product name
+     * @throws MetaDataAccessException when the database cannot be identified
+     */
+    private static Object product(final JdbcTemplate jdbcTemplate)
+            throws MetaDataAccessException {
+        return JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(),
+                "getDatabaseProductName");
+    }
+}
@@ -0,0 +1,378 @@
+package com.example.impl.client;
+
+import com.example.exception.InvalidDataException;
+import com.example.exception.MemoRestException;
+import com.example.exception.ServiceUnavailableException;
+import com.example.model.Memo;
+import com.google.common.base.Throwables;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Group commit of the memo creates. Concurrent creates are queued and inserted by
+ * one thread, up to max batch size memos per transaction, so a burst of creates
+ * pays one commit per batch instead of one per memo. The thread waits at most
+ * the linger time for a batch to fill once its first memo is queued, and a
+ * create waits at most the timeout for its batch to commit. Enabled by
+ * memo.group-commit.enabled.
+ */
+@Component
+@ConditionalOnProperty(prefix = "memo.group-commit", name = "enabled",
+        havingValue = "true")
+class MemoGroupCommit implements InitializingBean, DisposableBean, PublicMetrics {
+
+    /**
+     * The Validator.
+     */
+    private static final Validator VALIDATOR =
+            Validation.buildDefaultValidatorFactory().getValidator();
+
+    /**
+     * How long the flushing thread is waited for on shutdown, in milliseconds.
+     */
+    private static final long SHUTDOWN_WAIT_MILLIS = 5000L;
+
+    /**
+     * How often the idle flushing thread checks for shutdown, in milliseconds.
+     */
+    private static final long POLL_MILLIS = 100L;
+
+    /**
+     * The creates waiting for their batch.
+     */
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The transactions of the batches.
+     */
+    private final TransactionTemplate transactions;
+
+    /**
+     * The shared entity manager.
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * The change sequence.
+     */
+    private final MemoChangeSequence changeSequence;
+
+    /**
+     * The maximum number of memos per batch.
+     */
+    private final int maxBatchSize;
+
+    /**
+     * How long a batch waits to fill after its first memo, in nanoseconds.
+     */
+    private final long lingerNanos;
+
+    /**
+     * How long a create waits for its batch to commit, in milliseconds.
+     */
+    private final long timeoutMillis;
+
+    /**
+     * The batches committed.
+     */
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * The memos created by the batches.
+     */
+    private final AtomicLong created = new AtomicLong();
+
+    /**
+     * The thread inserting the batches.
+     */
+    private final Thread flusher = new Thread(this::run, "memo-group-commit");
+
+    /**
+     * Whether creates are accepted.
+     */
+    private volatile boolean running;
+
+    /**
+     * Instantiates a new Memo group commit.
+     *
+     * @param transactionManager   the transaction manager
+     * @param entityManagerFactory the entity manager factory
+     * @param sequence             the change sequence
+     * @param batchSize            the maximum number of memos per batch
+     * @param lingerMicros         how long a batch waits to fill, in microseconds
+     * @param timeout              how long a create waits for its batch, in
+     *                             milliseconds
+     */
+    @Autowired
+    MemoGroupCommit(final PlatformTransactionManager transactionManager,
+                    final EntityManagerFactory entityManagerFactory,
+                    final MemoChangeSequence sequence,
+                    @Value("${memo.group-commit.max-batch-size:50}") final int batchSize,
+                    @Value("${memo.group-commit.linger-micros:500}")
+                    final long lingerMicros,
+                    @Value("${memo.group-commit.timeout-ms:30000}") final long timeout) {
+        this.transactions = new TransactionTemplate(transactionManager);
+        this.entityManager = SharedEntityManagerCreator
+                .createSharedEntityManager(entityManagerFactory);
+        this.changeSequence = sequence;
+        this.maxBatchSize = batchSize;
+        this.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        this.timeoutMillis = timeout;
+        flusher.setDaemon(true);
+    }
+
+    /**
+     * Start the flushing thread.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        running = true;
+        flusher.start();
+    }
+
+    /**
+     * Stop accepting creates and wait for the queued ones to be flushed.
+     *
+     * @throws InterruptedException when interrupted while waiting for the thread
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        flusher.join(SHUTDOWN_WAIT_MILLIS);
+    }
+
+    /**
+     * Create a memo in the next batch and wait for the batch to commit. The memo
+     * is validated before it is queued, so an invalid memo fails alone. A create
+     * whose batch does not commit in time fails as unavailable; it is dropped
+     * when still queued, else its memo may yet be created.
+     *
+     * @param memo the memo, without id
+     * @return the created memo
+     */
+    Memo create(final Memo memo) {
+        Set<ConstraintViolation<Memo>> violations = VALIDATOR.validate(memo);
+        if (!violations.isEmpty()) {
+            StringBuilder detail = new StringBuilder();
+            for (ConstraintViolation<Memo> violation : violations) {
+                detail.append(violation.getMessage()).append('\n');
+            }
+            throw new InvalidDataException(detail.toString());
+        }
+
+        Pending pending = new Pending(memo);
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            throw new ServiceUnavailableException("Memo creates are shutting down.");
+        }
+        try {
+            return pending.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException ex) {
+            Throwables.propagateIfPossible(ex.getCause());
+            throw new MemoRestException("Memo did not get created.", ex.getCause());
+        } catch (TimeoutException ex) {
+            queue.remove(pending);
+            throw new ServiceUnavailableException(
+                    "Memo create timed out waiting for its batch.", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            queue.remove(pending);
+            throw new ServiceUnavailableException(
+                    "Memo create interrupted waiting for its batch.", ex);
+        }
+    }
+
+    /**
+     * Group commit metrics: the batches committed and the memos they created.
+     *
+     * @return the metrics
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = newArrayList();
+        metrics.add(new Metric<Long>("memo.group-commit.batches", batches.get()));
+        metrics.add(new Metric<Long>("memo.group-commit.memos", created.get()));
+        return metrics;
+    }
+
+    /**
+     * Loop of the flushing thread: take the first queued create, gather more until
+     * the batch is full or the linger time is over, then insert the batch. What is
+     * still queued on shutdown is flushed before the thread ends. A batch failing
+     * unexpectedly fails its creates, and the loop goes on with the next one.
+     */
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + lingerNanos;
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(),
+                            TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                try {
+                    flush(batch);
+                } catch (Throwable ex) {
+                    fail(batch, ex);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            queue.drainTo(batch);
+            fail(batch, new ServiceUnavailableException(
+                    "Memo creates are shutting down."));
+        }
+    }
+
+    /**
+     * Fail the creates of a batch not completed yet.
+     *
+     * @param batch the batch
+     * @param ex    the failure
+     */
+    private static void fail(final List<Pending> batch, final Throwable ex) {
+        for (Pending pending : batch) {
+            pending.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Insert a batch in one transaction and complete its creates. When the batch
+     * fails, its memos are inserted again one per transaction so that each create
+     * gets its own outcome.
+     *
+     * @param batch the batch
+     */
+    private void flush(final List<Pending> batch) {
+        try {
+            transactions.execute(status -> insert(batch));
+        } catch (RuntimeException ex) {
+            if (batch.size() > 1) {
+                for (Pending pending : batch) {
+                    flush(Collections.singletonList(pending));
+                }
+            } else {
+                batch.get(0).completeExceptionally(translate(ex));
+            }
+            return;
+        }
+        batches.incrementAndGet();
+        created.addAndGet(batch.size());
+        for (Pending pending : batch) {
+            pending.complete(pending.memo);
+        }
+    }
+
+    /**
+     * Insert the memos of a batch, in the transaction of the caller. The memos
+     * share one position in the change feed and are sent as JDBC batches.
+     *
+     * @param batch the batch
+     * @return the number of memos inserted
+     */
+    private Integer insert(final List<Pending> batch) {
+        return changeSequence.write(changeSeq -> insert(batch, changeSeq));
+    }
+
+    /**
+     * Insert the memos of a batch at a position of the change feed.
+     *
+     * @param batch     the batch
+     * @param changeSeq the position, null when set by the database
+     * @return the number of memos inserted
+     */
+    private Integer insert(final List<Pending> batch, final Long changeSeq) {
+        for (Pending pending : batch) {
+            Memo memo = pending.memo;
+            memo.setId(null);
+            memo.setVersion(null);
+            memo.setActive(true);
+            memo.setChangeSeq(changeSeq);
+            entityManager.persist(memo);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return batch.size();
+    }
+
+    /**
+     * Translate the failure of a create as the direct create path does.
+     *
+     * @param ex the failure
+     * @return the exception the create fails with
+     */
+    private static RuntimeException translate(final RuntimeException ex) {
+        if (ex instanceof DataIntegrityViolationException
+                || ex instanceof TransactionSystemException
+                || ex instanceof PersistenceException
+                || ex instanceof ConstraintViolationException) {
+            return new InvalidDataException(ex.getMessage());
+        }
+        return ex;
+    }
+
+    /**
+     * A create waiting for its batch, completed with the created memo.
+     */
+    private static final class Pending extends CompletableFuture<Memo> {
+
+        /**
+         * The memo to create.
+         */
+        private final Memo memo;
+
+        /**
+         * Instantiates a new Pending create.
+         *
+         * @param request the memo to create
+         */
+        private Pending(final Memo request) {
+            this.memo = request;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.impl.client;
+
+import com.example.model.Memo;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps MEMOS rows read with plain JDBC, outside of the entity manager, to memos.
+ * Such queries have to leave out the deleted memos themselves.
+ */
+final class MemoRowMapper implements RowMapper<Memo> {
+
+    /**
+     * The memo columns read by the mapper.
+     */
+    static final String COLUMNS = "ID, TITLE, AUTHOR, TEXT, CREATED, UPDATED, VERSION";
+
+    /**
+     * Select of the memo columns, to complete with the conditions and the order.
+     */
+    static final String SELECT_MEMOS = "SELECT " + COLUMNS + " FROM MEMOS";
+
+    /**
+     * Condition leaving out the deleted memos, which are kept for the change feed.
+     */
+    static final String ACTIVE = "ACTIVE = TRUE";
+
+    /**
+     * The shared instance, the mapper has no state.
+     */
+    static final MemoRowMapper INSTANCE = new MemoRowMapper();
+
+    /**
+     * Hidden constructor, use the shared instance.
+     */
+    private MemoRowMapper() {
+    }
+
+    /**
+     * Map the current row.
+     *
+     * @param row the row
+     * @param rowNum the row number
+     * @return the memo
+     * @throws SQLException the sql exception
+     */
+    @Override
+    public Memo mapRow(final ResultSet row, final int rowNum) throws SQLException {
+        Memo memo = new Memo();
+        memo.setId(row.getLong("ID"));
+        memo.setTitle(row.getString("TITLE"));
+        memo.setAuthor(row.getString("AUTHOR"));
+        memo.setText(row.getString("TEXT"));
+        memo.setCreated(row.getTimestamp("CREATED"));
+        memo.setUpdated(row.getTimestamp("UPDATED"));
+        memo.setVersion(row.getLong("VERSION"));
+        return memo;
+    }
+}
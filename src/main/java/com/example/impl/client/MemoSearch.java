@@ -0,0 +1,44 @@
+package com.example.impl.client;
+
+import com.example.model.Memo;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Full-text search over the title, author and text of the memos. The DAO client
+ * reports its writes, for implementations that keep their own index.
+ */
+interface MemoSearch {
+
+    /**
+     * Find the memos matching all the words of a query, best match first.
+     *
+     * @param query the words to look for
+     * @param offset the number of matches to skip
+     * @param limit the maximum number of memos returned
+     * @return the memos matching
+     */
+    List<Memo> search(String query, int offset, int limit);
+
+    /**
+     * Index a memo just created.
+     *
+     * @param memo the memo
+     */
+    void index(Memo memo);
+
+    /**
+     * Index again a memo updated or deleted, from its stored state.
+     *
+     * @param id the memo id
+     */
+    void refresh(Long id);
+
+    /**
+     * Drop memos deleted in bulk.
+     *
+     * @param ids the memo ids
+     */
+    void remove(Collection<Long> ids);
+}
@@ -0,0 +1,542 @@
+package com.example.impl.client;
+
+import com.example.model.MemoStats;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics of the memos, kept in memory so that reading them never aggregates
+ * the table. A scheduled task reads the change feed since its last run, in one
+ * read only transaction, and moves each changed memo from the author and text
+ * length range it was counted in to its new ones. Those are known for the memos
+ * created or changed since the last aggregation, up to a bound past which the
+ * least recently changed ones are forgotten. A change of any other memo leaves
+ * the counts to the next aggregation, which reads them again in one pass over the
+ * memos; the first refresh aggregates, the later ones at most once per
+ * aggregation interval.
+ * The writes only count the rates.
+ */
+@Component
+class MemoStatistics {
+
+    /**
+     * Upper bounds, excluded, of the text length ranges but the last.
+     */
+    private static final int[] TEXT_SIZE_BOUNDS = {100, 1000, 10000};
+
+    /**
+     * Query of the changes after a position of the feed.
+     */
+    private static final String FEED_QUERY = "SELECT ID, VERSION, AUTHOR,"
+            + " LENGTH(TEXT) TEXT_LENGTH, ACTIVE, CHANGE_SEQ FROM MEMOS"
+            + " WHERE CHANGE_SEQ > ?";
+
+    /**
+     * Query of the memos by author and text length range, and of the last position
+     * of the feed they were read at.
+     */
+    private static final String AGGREGATE_QUERY = aggregateQuery();
+
+    /**
+     * Column of the first text length range in the aggregate query.
+     */
+    private static final int FIRST_SIZE_COLUMN = 3;
+
+    /**
+     * Milliseconds per second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * The labels of the text length ranges.
+     */
+    private static final String[] TEXT_SIZE_LABELS = textSizeLabels();
+
+    /**
+     * The Jdbc template reading the feed, with the fetch size of the export.
+     */
+    private final JdbcTemplate cursor;
+
+    /**
+     * The read only transactions of the refresh, served by a replica when there are.
+     */
+    private final TransactionTemplate readOnly;
+
+    /**
+     * The positions of the change feed.
+     */
+    private final MemoChangeSequence changeSequence;
+
+    /**
+     * The number of authors listed.
+     */
+    private final int topAuthors;
+
+    /**
+     * The least time between two aggregations, in milliseconds.
+     */
+    private final long aggregateMillis;
+
+    /**
+     * The memos created since start.
+     */
+    private final AtomicLong creates = new AtomicLong();
+
+    /**
+     * The memos updated since start.
+     */
+    private final AtomicLong updates = new AtomicLong();
+
+    /**
+     * The memos deleted since start.
+     */
+    private final AtomicLong deletes = new AtomicLong();
+
+    /**
+     * Serializes the refreshes, which alone change the counts.
+     */
+    private final Object refreshing = new Object();
+
+    /**
+     * The active memos whose counts are known, by id, guarded by this.
+     */
+    private final Cache<Long, Counted> tracked;
+
+    /**
+     * The memos, guarded by this.
+     */
+    private long total;
+
+    /**
+     * The memos by author, guarded by this.
+     */
+    private Map<String, Long> authors = new HashMap<>();
+
+    /**
+     * The memos by text length range, guarded by this.
+     */
+    private long[] textSizes = new long[TEXT_SIZE_LABELS.length];
+
+    /**
+     * The last position of the change feed applied, guarded by this.
+     */
+    private long aggregatedChangeSeq = -1L;
+
+    /**
+     * Whether a memo not tracked changed since the last aggregation, guarded by
+     * this.
+     */
+    private boolean drifted;
+
+    /**
+     * When the memos were last aggregated, 0 before the first refresh, guarded by
+     * this.
+     */
+    private long aggregated;
+
+    /**
+     * When the feed was last read, null before the first refresh, guarded by this.
+     */
+    private Date refreshed;
+
+    /**
+     * The creates at the previous refresh, guarded by this.
+     */
+    private long previousCreates;
+
+    /**
+     * The updates at the previous refresh, guarded by this.
+     */
+    private long previousUpdates;
+
+    /**
+     * The deletes at the previous refresh, guarded by this.
+     */
+    private long previousDeletes;
+
+    /**
+     * The time of the previous refresh, guarded by this.
+     */
+    private long previousRefresh = System.currentTimeMillis();
+
+    /**
+     * The creates per second of the last refresh interval, guarded by this.
+     */
+    private double createRate;
+
+    /**
+     * The updates per second of the last refresh interval, guarded by this.
+     */
+    private double updateRate;
+
+    /**
+     * The deletes per second of the last refresh interval, guarded by this.
+     */
+    private double deleteRate;
+
+    /**
+     * The snapshot served, null when the counts changed since it was built.
+     */
+    private volatile MemoStats snapshot;
+
+    /**
+     * Instantiates new Memo statistics.
+     *
+     * @param template           the jdbc template
+     * @param transactionManager the transaction manager
+     * @param sequence           the positions of the change feed
+     * @param top                the number of authors listed
+     * @param trackedMemos       the number of memos whose counts are kept
+     * @param aggregateInterval  the least time between two aggregations, in
+     *                           milliseconds
+     * @param fetchSize          the rows fetched per round trip
+     */
+    @Autowired
+    MemoStatistics(final JdbcTemplate template,
+                   final PlatformTransactionManager transactionManager,
+                   final MemoChangeSequence sequence,
+                   @Value("${memo.stats.top-authors:100}") final int top,
+                   @Value("${memo.stats.tracked-memos:100000}") final int trackedMemos,
+                   @Value("${memo.stats.aggregate-ms:3600000}")
+                   final long aggregateInterval,
+                   @Value("${memo.export.fetch-size:1000}") final int fetchSize) {
+        this.cursor = new JdbcTemplate(template.getDataSource());
+        this.cursor.setFetchSize(fetchSize);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+        this.changeSequence = sequence;
+        this.topAuthors = top;
+        this.aggregateMillis = aggregateInterval;
+        this.tracked = CacheBuilder.newBuilder().maximumSize(trackedMemos).build();
+    }
+
+    /**
+     * Gets the statistics.
+     *
+     * @return the snapshot, shared until the counts change
+     */
+    MemoStats get() {
+        MemoStats current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                snapshot = build();
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Count committed memos created, for the rates.
+     *
+     * @param count the number of memos created
+     */
+    void created(final int count) {
+        creates.addAndGet(count);
+    }
+
+    /**
+     * Count a committed memo updated, for the rates.
+     */
+    void updated() {
+        updates.incrementAndGet();
+    }
+
+    /**
+     * Count committed memos deleted, for the rates.
+     *
+     * @param count the number of memos deleted
+     */
+    void deleted(final int count) {
+        deletes.addAndGet(count);
+    }
+
+    /**
+     * Aggregate the memos when due, apply the changes of the feed since the last
+     * position applied, then compute the rates of the writes since the previous
+     * refresh. The feed stops below the writes in flight, which it serves once
+     * committed.
+     */
+    @Scheduled(fixedDelayString = "${memo.stats.refresh-ms:60000}")
+    public void refresh() {
+        synchronized (refreshing) {
+            readOnly.execute(status -> {
+                if (isAggregationDue()) {
+                    aggregate();
+                }
+                applyFeed();
+                return null;
+            });
+        }
+
+        synchronized (this) {
+            refreshed = new Date();
+            long now = System.currentTimeMillis();
+            long intervalMillis = now - previousRefresh;
+            previousRefresh = now;
+            createRate = rate(creates.get() - previousCreates, intervalMillis);
+            updateRate = rate(updates.get() - previousUpdates, intervalMillis);
+            deleteRate = rate(deletes.get() - previousDeletes, intervalMillis);
+            previousCreates = creates.get();
+            previousUpdates = updates.get();
+            previousDeletes = deletes.get();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Gets a rate per second.
+     *
+     * @param count          the count over the interval
+     * @param intervalMillis the length of the interval
+     * @return the rate
+     */
+    private static double rate(final long count, final long intervalMillis) {
+        if (intervalMillis <= 0) {
+            return 0;
+        }
+        return count * MILLIS_PER_SECOND / intervalMillis;
+    }
+
+    /**
+     * Whether the memos have to be aggregated: never done, or a memo not tracked
+     * changed and the aggregation interval has elapsed.
+     *
+     * @return true when due
+     */
+    private synchronized boolean isAggregationDue() {
+        return refreshed == null
+                || drifted && System.currentTimeMillis() - aggregated >= aggregateMillis;
+    }
+
+    /**
+     * Read the counts in one pass over the memos, with the last position of the
+     * feed they include. No memo is tracked afterwards.
+     */
+    private void aggregate() {
+        Map<String, Long> byAuthor = new HashMap<>();
+        long[] bySize = new long[TEXT_SIZE_LABELS.length];
+        long[] count = new long[1];
+        long[] last = {-1L};
+        cursor.query(AGGREGATE_QUERY + changeSequence.visible() + " GROUP BY AUTHOR",
+                (RowCallbackHandler) rs -> {
+                    long memos = rs.getLong(2);
+                    if (memos > 0) {
+                        byAuthor.put(rs.getString(1), memos);
+                    }
+                    count[0] += memos;
+                    for (int i = 0; i < bySize.length; i++) {
+                        bySize[i] += rs.getLong(FIRST_SIZE_COLUMN + i);
+                    }
+                    last[0] = Math.max(last[0], rs.getLong("LAST_CHANGE_SEQ"));
+                });
+
+        synchronized (this) {
+            total = count[0];
+            authors = byAuthor;
+            textSizes = bySize;
+            tracked.invalidateAll();
+            aggregatedChangeSeq = last[0];
+            drifted = false;
+            aggregated = System.currentTimeMillis();
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Apply the changes of the feed since the last position applied.
+     */
+    private void applyFeed() {
+        long since;
+        synchronized (this) {
+            since = aggregatedChangeSeq;
+        }
+        cursor.query(FEED_QUERY + " AND " + changeSequence.visible(),
+                (RowCallbackHandler) rs -> apply(rs.getLong("ID"), rs.getLong("VERSION"),
+                        rs.getString("AUTHOR"), textSize(rs.getInt("TEXT_LENGTH")),
+                        rs.getBoolean("ACTIVE"), rs.getLong("CHANGE_SEQ")), since);
+    }
+
+    /**
+     * Apply a change of the feed. A tracked memo is moved from its old counts to
+     * its new ones, and forgotten once deleted. A memo not tracked at version 0
+     * was created after the last position applied, so it is simply counted; any
+     * other is left to the next aggregation.
+     *
+     * @param id        the id
+     * @param version   the version
+     * @param author    the author
+     * @param textSize  the text length range
+     * @param active    false when the memo is deleted
+     * @param changeSeq the position of the change
+     */
+    private synchronized void apply(final long id, final long version,
+                                    final String author, final int textSize,
+                                    final boolean active, final long changeSeq) {
+        aggregatedChangeSeq = Math.max(aggregatedChangeSeq, changeSeq);
+        Counted counted = tracked.getIfPresent(id);
+        tracked.invalidate(id);
+        if (counted != null) {
+            count(counted.author, counted.textSize, -1L);
+        } else if (version > 0) {
+            drifted = true;
+            return;
+        }
+        if (active) {
+            count(author, textSize, 1L);
+            tracked.put(id, new Counted(author, textSize));
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Add a memo to the counts, or take it out of them.
+     *
+     * @param author   the author
+     * @param textSize the text length range
+     * @param delta    1 to add the memo, -1 to take it out
+     */
+    private void count(final String author, final int textSize, final long delta) {
+        total += delta;
+        authors.merge(author, delta, (count, added) -> {
+            long sum = count + added;
+            if (sum <= 0) {
+                return null;
+            }
+            return sum;
+        });
+        textSizes[textSize] += delta;
+    }
+
+    /**
+     * Build the snapshot of the current counts, with the authors with the most
+     * memos first.
+     *
+     * @return the snapshot
+     */
+    private MemoStats build() {
+        List<Map.Entry<String, Long>> byCount = new ArrayList<>(authors.entrySet());
+        byCount.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey()));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> author
+                : byCount.subList(0, Math.min(topAuthors, byCount.size()))) {
+            top.put(author.getKey(), author.getValue());
+        }
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        for (int i = 0; i < TEXT_SIZE_LABELS.length; i++) {
+            sizes.put(TEXT_SIZE_LABELS[i], textSizes[i]);
+        }
+
+        MemoStats stats = new MemoStats();
+        stats.setTotal(total);
+        stats.setAuthors(top);
+        stats.setTextSizes(sizes);
+        stats.setCreateRate(createRate);
+        stats.setUpdateRate(updateRate);
+        stats.setDeleteRate(deleteRate);
+        if (refreshed != null) {
+            stats.setRefreshed(new Date(refreshed.getTime()));
+        }
+        return stats;
+    }
+
+    /**
+     * Gets the text length range of a text length.
+     *
+     * @param length the length
+     * @return the index of the range
+     */
+    private static int textSize(final int length) {
+        int range = 0;
+        while (range < TEXT_SIZE_BOUNDS.length && length >= TEXT_SIZE_BOUNDS[range]) {
+            range++;
+        }
+        return range;
+    }
+
+    /**
+     * Build the query of the active memos by author, with one count per text
+     * length range, and the last position of the feed of each author. The
+     * condition on the visible positions and the grouping are appended.
+     *
+     * @return the query
+     */
+    private static String aggregateQuery() {
+        String active = "CASE WHEN " + MemoRowMapper.ACTIVE;
+        StringBuilder query = new StringBuilder("SELECT AUTHOR, SUM(")
+                .append(active).append(" THEN 1 ELSE 0 END)");
+        int lower = 0;
+        for (int bound : TEXT_SIZE_BOUNDS) {
+            query.append(", SUM(").append(active).append(" AND LENGTH(TEXT) >= ")
+                    .append(lower).append(" AND LENGTH(TEXT) < ").append(bound)
+                    .append(" THEN 1 ELSE 0 END)");
+            lower = bound;
+        }
+        query.append(", SUM(").append(active).append(" AND LENGTH(TEXT) >= ")
+                .append(lower).append(" THEN 1 ELSE 0 END)");
+        return query.append(", MAX(CHANGE_SEQ) LAST_CHANGE_SEQ FROM MEMOS WHERE ")
+                .toString();
+    }
+
+    /**
+     * Build the labels of the text length ranges, such as 100-999 and 10000+.
+     *
+     * @return the labels
+     */
+    private static String[] textSizeLabels() {
+        String[] labels = new String[TEXT_SIZE_BOUNDS.length + 1];
+        int lower = 0;
+        for (int i = 0; i < TEXT_SIZE_BOUNDS.length; i++) {
+            labels[i] = lower + "-" + (TEXT_SIZE_BOUNDS[i] - 1);
+            lower = TEXT_SIZE_BOUNDS[i];
+        }
+        labels[TEXT_SIZE_BOUNDS.length] = lower + "+";
+        return labels;
+    }
+
+    /**
+     * The author and text length range a tracked memo is counted in.
+     */
+    private static final class Counted {
+
+        /**
+         * The author.
+         */
+        private final String author;
+
+        /**
+         * The text length range.
+         */
+        private final int textSize;
+
+        /**
+         * Instantiates a new Counted.
+         *
+         * @param name  the author
+         * @param range the text length range
+         */
+        private Counted(final String name, final int range) {
+            this.author = name;
+            this.textSize = range;
+        }
+    }
+}
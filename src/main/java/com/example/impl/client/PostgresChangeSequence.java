@@ -0,0 +1,42 @@
+package com.example.impl.client;
+
+import java.util.function.Function;
+
+/**
+ * The change sequence of PostgreSQL. The memos_change_seq trigger of setup-db.sql
+ * sets CHANGE_SEQ to the id of the writing transaction, in the statement of the
+ * write, so the rows of one transaction share a position. The changes served are
+ * the ones below the oldest transaction still running on the server read, which
+ * every later write comes after.
+ */
+class PostgresChangeSequence implements MemoChangeSequence {
+
+    /**
+     * Condition of the changes of the finished transactions.
+     */
+    private static final String VISIBLE =
+            "CHANGE_SEQ < txid_snapshot_xmin(txid_current_snapshot())";
+
+    /**
+     * Run a write, whose position is set by the trigger.
+     *
+     * @param <T>   the type of the result
+     * @param write the write, given null
+     * @return the result of the write
+     */
+    @Override
+    public <T> T write(final Function<Long, T> write) {
+        return write.apply(null);
+    }
+
+    /**
+     * Gets the condition of the changes of the finished transactions, evaluated by
+     * the statement reading them.
+     *
+     * @return the condition
+     */
+    @Override
+    public String visible() {
+        return VISIBLE;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.impl.client;
+
+import com.example.model.Memo;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Memo search with the PostgreSQL full-text search. The document is the weighted
+ * tsvector of the title, the author and the text; the expression is the one of the
+ * MEMOS_SEARCH_IDX GIN index, so matches are found through the index. The database
+ * keeps the index up to date, the write notifications are ignored.
+ */
+class PostgresMemoSearch implements MemoSearch {
+
+    /**
+     * The searched document, identical to the expression of the GIN index.
+     */
+    static final String DOCUMENT = "(setweight(to_tsvector('english', TITLE), 'A')"
+            + " || setweight(to_tsvector('english', AUTHOR), 'B')"
+            + " || setweight(to_tsvector('english', TEXT), 'C'))";
+
+    /**
+     * Query of the matching memos, ranked.
+     */
+    private static final String SEARCH_QUERY = MemoRowMapper.SELECT_MEMOS
+            + ", plainto_tsquery('english', ?) QUERY WHERE " + MemoRowMapper.ACTIVE
+            + " AND " + DOCUMENT + " @@ QUERY"
+            + " ORDER BY ts_rank(" + DOCUMENT + ", QUERY) DESC, ID LIMIT ? OFFSET ?";
+
+    /**
+     * The Jdbc template.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Instantiates a new Postgres memo search.
+     *
+     * @param template the jdbc template
+     */
+    PostgresMemoSearch(final JdbcTemplate template) {
+        this.jdbcTemplate = template;
+    }
+
+    /**
+     * Search.
+     *
+     * @param query  the query
+     * @param offset the offset
+     * @param limit  the limit
+     * @return the memos
+     */
+    @Override
+    public List<Memo> search(final String query, final int offset, final int limit) {
+        return jdbcTemplate.query(SEARCH_QUERY, MemoRowMapper.INSTANCE, query, limit,
+                offset);
+    }
+
+    /**
+     * Index, done by the database.
+     *
+     * @param memo the memo
+     */
+    @Override
+    public void index(final Memo memo) {
+        // The GIN index is maintained by the database.
+    }
+
+    /**
+     * Refresh, done by the database.
+     *
+     * @param id the id
+     */
+    @Override
+    public void refresh(final Long id) {
+        // The GIN index is maintained by the database.
+    }
+
+    /**
+     * Remove, done by the database.
+     *
+     * @param ids the memo ids
+     */
+    @Override
+    public void remove(final Collection<Long> ids) {
+        // The GIN index is maintained by the database.
+    }
+}
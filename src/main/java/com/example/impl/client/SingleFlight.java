@@ -0,0 +1,105 @@
+package com.example.impl.client;
+
+import com.example.exception.MemoRestException;
+import com.google.common.base.Throwables;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Coalesces identical concurrent reads. The first caller of a key loads it on its
+ * own thread; the callers arriving with the same key while the load is in flight
+ * wait for it and share its result, or its exception, instead of reading the
+ * database again. Nothing is kept once the load is over. The loads and the calls
+ * collapsed into them are published on the metrics endpoint.
+ */
+@Component
+class SingleFlight implements PublicMetrics {
+
+    /**
+     * The loads in flight by key.
+     */
+    private final ConcurrentMap<Object, CompletableFuture<Object>> flights =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The loads run.
+     */
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * The calls served by the load of another caller.
+     */
+    private final AtomicLong collapsed = new AtomicLong();
+
+    /**
+     * Load a key, or wait for the load of the same key already in flight.
+     *
+     * @param <T>  the type of the value
+     * @param key  the key, equal for identical reads
+     * @param load the load
+     * @return the value
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(final Object key, final Supplier<T> load) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> current = flights.putIfAbsent(key, flight);
+        if (current != null) {
+            collapsed.incrementAndGet();
+            try {
+                return (T) current.join();
+            } catch (CompletionException ex) {
+                Throwables.propagateIfPossible(ex.getCause());
+                throw new MemoRestException(ex.getMessage(), ex.getCause());
+            }
+        }
+
+        loads.incrementAndGet();
+        try {
+            T value = load.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * Forget the load of a key in flight after a write, so that the next callers
+     * read again instead of waiting for a value read before the write. The load
+     * forgotten still completes for the callers that joined it; a value it caches
+     * has to be checked against the write by the cache.
+     *
+     * @param key the key
+     */
+    void forget(final Object key) {
+        flights.remove(key);
+    }
+
+    /**
+     * Single flight metrics.
+     *
+     * @return the metrics
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = newArrayList();
+        metrics.add(new Metric<Long>("memo.singleflight.loads", loads.get()));
+        metrics.add(new Metric<Long>("memo.singleflight.collapsed", collapsed.get()));
+        metrics.add(new Metric<Integer>("memo.singleflight.inflight", flights.size()));
+        return metrics;
+    }
+}
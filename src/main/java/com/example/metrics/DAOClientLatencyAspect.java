@@ -0,0 +1,72 @@
+package com.example.metrics;
+
+import com.example.exception.ConflictException;
+import com.example.exception.DataNotFoundException;
+import com.example.exception.InvalidArgumentException;
+import com.example.exception.InvalidDataException;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the latency of every DAO client call. Failed calls are counted under
+ * the status code the exception handler answers them with.
+ */
+@Aspect
+@Component
+public class DAOClientLatencyAspect {
+
+    /**
+     * The latency registry.
+     */
+    @Autowired
+    private LatencyRegistry registry;
+
+    /**
+     * Time a DAO client call.
+     *
+     * @param call the call
+     * @return the result of the call
+     * @throws Throwable the exception of the call
+     */
+    @Around("execution(* com.example.api.client.DAOClient.*(..))")
+    public Object record(final ProceedingJoinPoint call) throws Throwable {
+        long start = System.nanoTime();
+        int status = HttpStatus.OK.value();
+        try {
+            return call.proceed();
+        } catch (Throwable ex) {
+            status = statusOf(ex);
+            throw ex;
+        } finally {
+            registry.daoMethod(((MethodSignature) call.getSignature()).getMethod())
+                    .record(System.nanoTime() - start, status);
+        }
+    }
+
+    /**
+     * Status code of a failed call, as set by the GeneralExceptionHandler.
+     *
+     * @param ex the exception
+     * @return the status code
+     */
+    private static int statusOf(final Throwable ex) {
+        if (ex instanceof DataNotFoundException
+                || ex instanceof EmptyResultDataAccessException) {
+            return HttpStatus.NOT_FOUND.value();
+        }
+        if (ex instanceof InvalidDataException
+                || ex instanceof InvalidArgumentException) {
+            return HttpStatus.BAD_REQUEST.value();
+        }
+        if (ex instanceof ConflictException) {
+            return HttpStatus.CONFLICT.value();
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR.value();
+    }
+}
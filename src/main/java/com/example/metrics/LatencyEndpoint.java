@@ -0,0 +1,53 @@
+package com.example.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Management endpoint with the latency percentiles, rate and error rate of every
+ * handler method and DAO client method, and of the connection pool borrows, over
+ * the last metrics interval.
+ */
+@Component
+public class LatencyEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+    /**
+     * The latency registry.
+     */
+    @Autowired
+    private LatencyRegistry registry;
+
+    /**
+     * The length of the metrics interval.
+     */
+    @Value("${memo.metrics.interval-ms:10000}")
+    private long intervalMillis;
+
+    /**
+     * Instantiates a new Latency endpoint.
+     */
+    public LatencyEndpoint() {
+        super("latency");
+    }
+
+    /**
+     * The latency snapshots.
+     *
+     * @return the snapshots of the handlers, of the DAO client and of the pool
+     */
+    @Override
+    public Map<String, Object> invoke() {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("unit", "microseconds");
+        latency.put("intervalMillis", intervalMillis);
+        latency.put("handlers", registry.handlerSnapshots());
+        latency.put("dao", registry.daoSnapshots());
+        latency.put("connectionWait", registry.connectionWaitSnapshot());
+        return latency;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.metrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Records the latency and the status of every request served by a handler method.
+ * An asynchronous request is recorded once, when its async dispatch completes,
+ * from the time of the initial dispatch.
+ */
+@Component
+public class LatencyInterceptor extends HandlerInterceptorAdapter {
+
+    /**
+     * Request attribute holding the start of the request.
+     */
+    private static final String START = LatencyInterceptor.class.getName() + ".START";
+
+    /**
+     * The latency registry.
+     */
+    @Autowired
+    private LatencyRegistry registry;
+
+    /**
+     * Remember when the request started, unless it is the async dispatch of a
+     * request already started.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param handler  the handler
+     * @return true, the request always proceeds
+     */
+    @Override
+    public boolean preHandle(final HttpServletRequest request,
+                             final HttpServletResponse response, final Object handler) {
+        if (request.getAttribute(START) == null) {
+            request.setAttribute(START, System.nanoTime());
+        }
+        return true;
+    }
+
+    /**
+     * Record the request once the response is complete.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param handler  the handler
+     * @param ex       the exception not handled, if any
+     */
+    @Override
+    public void afterCompletion(final HttpServletRequest request,
+                                final HttpServletResponse response, final Object handler,
+                                final Exception ex) {
+        Object start = request.getAttribute(START);
+        if (!(handler instanceof HandlerMethod) || !(start instanceof Long)) {
+            return;
+        }
+        int status = response.getStatus();
+        if (ex != null) {
+            status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        }
+        registry.handler(((HandlerMethod) handler).getMethod())
+                .record(System.nanoTime() - (Long) start, status);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.metrics;
+
+import com.example.model.LatencySnapshot;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram and status counters of one handler or DAO method. Recording
+ * does not allocate: the latency goes to an HdrHistogram recorder and the status
+ * to a fixed array of counters. The snapshot read by the metrics endpoint is
+ * rebuilt once per interval.
+ */
+class LatencyMetrics {
+
+    /**
+     * Highest latency tracked, in microseconds; longer calls are recorded as it.
+     */
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    /**
+     * Significant digits kept by the histograms.
+     */
+    private static final int SIGNIFICANT_DIGITS = 2;
+
+    /**
+     * Number of status codes counted, codes beyond are counted as the last one.
+     */
+    private static final int STATUSES = 600;
+
+    /**
+     * First status code counted as an error.
+     */
+    private static final int FIRST_ERROR_STATUS = 400;
+
+    /**
+     * The 50th percentile.
+     */
+    private static final double P50 = 50.0;
+
+    /**
+     * The 99th percentile.
+     */
+    private static final double P99 = 99.0;
+
+    /**
+     * The 99.9th percentile.
+     */
+    private static final double P999 = 99.9;
+
+    /**
+     * Milliseconds per second.
+     */
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    /**
+     * The latency recorder.
+     */
+    private final Recorder recorder =
+            new Recorder(1L, HIGHEST_MICROS, SIGNIFICANT_DIGITS);
+
+    /**
+     * The calls since start by status code.
+     */
+    private final AtomicLongArray statuses = new AtomicLongArray(STATUSES);
+
+    /**
+     * The status counts at the end of the previous interval.
+     */
+    private final long[] previousStatuses = new long[STATUSES];
+
+    /**
+     * The histogram of the last interval, recycled by the recorder.
+     */
+    private Histogram interval;
+
+    /**
+     * The snapshot of the last interval.
+     */
+    private volatile LatencySnapshot snapshot = new LatencySnapshot();
+
+    /**
+     * Record a call.
+     *
+     * @param nanos  the duration of the call in nanoseconds
+     * @param status the status code of the call
+     */
+    void record(final long nanos, final int status) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        recorder.recordValue(Math.min(Math.max(1L, micros), HIGHEST_MICROS));
+        statuses.incrementAndGet(Math.min(Math.max(0, status), STATUSES - 1));
+    }
+
+    /**
+     * Close the current interval and rebuild the snapshot. Called by a single
+     * thread.
+     *
+     * @param intervalMillis the length of the interval
+     */
+    synchronized void roll(final long intervalMillis) {
+        interval = recorder.getIntervalHistogram(interval);
+
+        long count = 0;
+        long errors = 0;
+        long total = 0;
+        Map<String, Long> byStatus = new TreeMap<>();
+        for (int status = 0; status < STATUSES; status++) {
+            long calls = statuses.get(status);
+            if (calls == 0) {
+                continue;
+            }
+            long delta = calls - previousStatuses[status];
+            previousStatuses[status] = calls;
+            count += delta;
+            if (status >= FIRST_ERROR_STATUS) {
+                errors += delta;
+            }
+            total += calls;
+            byStatus.put(String.valueOf(status), calls);
+        }
+
+        LatencySnapshot next = new LatencySnapshot();
+        next.setCount(count);
+        next.setTotalCount(total);
+        if (intervalMillis > 0) {
+            next.setRate(count * MILLIS_PER_SECOND / intervalMillis);
+        }
+        if (count > 0) {
+            next.setErrorRate((double) errors / count);
+        }
+        next.setP50(interval.getValueAtPercentile(P50));
+        next.setP99(interval.getValueAtPercentile(P99));
+        next.setP999(interval.getValueAtPercentile(P999));
+        next.setMax(interval.getMaxValue());
+        next.setStatuses(byStatus);
+        snapshot = next;
+    }
+
+    /**
+     * Gets the snapshot of the last interval.
+     *
+     * @return the snapshot
+     */
+    LatencySnapshot getSnapshot() {
+        return snapshot;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.metrics;
+
+import com.example.model.LatencySnapshot;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Latency metrics of the handler methods and of the DAO client methods, created
+ * on the first call of each method, and of the connection pool borrows. Their
+ * snapshots are rebuilt every metrics interval.
+ */
+@Component
+public class LatencyRegistry {
+
+    /**
+     * The metrics of the handler methods.
+     */
+    private final ConcurrentMap<Method, LatencyMetrics> handlers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the DAO client methods.
+     */
+    private final ConcurrentMap<Method, LatencyMetrics> daoMethods =
+            new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of the waits for a pooled connection.
+     */
+    private final LatencyMetrics connectionWaits = new LatencyMetrics();
+
+    /**
+     * When the current interval started.
+     */
+    private volatile long intervalStart = System.currentTimeMillis();
+
+    /**
+     * Gets the metrics of a handler method.
+     *
+     * @param method the handler method
+     * @return the metrics
+     */
+    LatencyMetrics handler(final Method method) {
+        return metrics(handlers, method);
+    }
+
+    /**
+     * Gets the metrics of a DAO client method.
+     *
+     * @param method the DAO client method
+     * @return the metrics
+     */
+    LatencyMetrics daoMethod(final Method method) {
+        return metrics(daoMethods, method);
+    }
+
+    /**
+     * Gets the metrics of the waits for a pooled connection.
+     *
+     * @return the metrics
+     */
+    LatencyMetrics connectionWaits() {
+        return connectionWaits;
+    }
+
+    /**
+     * Close the current interval of all metrics.
+     */
+    @Scheduled(fixedRateString = "${memo.metrics.interval-ms:10000}")
+    public void roll() {
+        long now = System.currentTimeMillis();
+        long intervalMillis = now - intervalStart;
+        intervalStart = now;
+        for (LatencyMetrics metrics : handlers.values()) {
+            metrics.roll(intervalMillis);
+        }
+        for (LatencyMetrics metrics : daoMethods.values()) {
+            metrics.roll(intervalMillis);
+        }
+        connectionWaits.roll(intervalMillis);
+    }
+
+    /**
+     * Gets the snapshots of the handler methods.
+     *
+     * @return the snapshots by Controller.method name
+     */
+    public Map<String, LatencySnapshot> handlerSnapshots() {
+        return snapshots(handlers);
+    }
+
+    /**
+     * Gets the snapshots of the DAO client methods.
+     *
+     * @return the snapshots by DAOClient.method name
+     */
+    public Map<String, LatencySnapshot> daoSnapshots() {
+        return snapshots(daoMethods);
+    }
+
+    /**
+     * Gets the snapshot of the waits for a pooled connection.
+     *
+     * @return the snapshot
+     */
+    public LatencySnapshot connectionWaitSnapshot() {
+        return connectionWaits.getSnapshot();
+    }
+
+    /**
+     * Gets or create the metrics of a method. The lookup does not allocate once
+     * the metrics exist.
+     *
+     * @param all    the metrics by method
+     * @param method the method
+     * @return the metrics
+     */
+    private static LatencyMetrics metrics(final ConcurrentMap<Method, LatencyMetrics> all,
+                                          final Method method) {
+        LatencyMetrics metrics = all.get(method);
+        if (metrics == null) {
+            metrics = all.computeIfAbsent(method, key -> new LatencyMetrics());
+        }
+        return metrics;
+    }
+
+    /**
+     * Gets the snapshots of some metrics.
+     *
+     * @param all the metrics by method
+     * @return the snapshots by name, overloaded methods get their parameter count
+     */
+    private static Map<String, LatencySnapshot> snapshots(
+            final ConcurrentMap<Method, LatencyMetrics> all) {
+        Map<String, LatencySnapshot> snapshots = new TreeMap<>();
+        for (Map.Entry<Method, LatencyMetrics> entry : all.entrySet()) {
+            Method method = entry.getKey();
+            String name = method.getDeclaringClass().getSimpleName() + "."
+                    + method.getName();
+            if (isOverloaded(method)) {
+                name = name + "/" + method.getParameterCount();
+            }
+            snapshots.put(name, entry.getValue().getSnapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Whether the class of a method declares other methods with the same name.
+     *
+     * @param method the method
+     * @return true when the method name is not enough to tell them apart
+     */
+    private static boolean isOverloaded(final Method method) {
+        for (Method other : method.getDeclaringClass().getDeclaredMethods()) {
+            if (!other.equals(method) && other.getName().equals(method.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
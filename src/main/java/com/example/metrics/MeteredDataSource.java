@@ -0,0 +1,133 @@
+package com.example.metrics;
+
+import com.example.model.LatencySnapshot;
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.http.HttpStatus;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Tomcat JDBC pool that times every connection borrow. The wait goes to the
+ * latency registry, borrows that time out are counted as 503, and the borrows
+ * that found the pool exhausted are counted apart. The pool gauges are published
+ * on the metrics endpoint next to them.
+ */
+public class MeteredDataSource extends DataSource implements PublicMetrics {
+
+    /**
+     * The metrics of the waits for a connection.
+     */
+    private final LatencyMetrics waits;
+
+    /**
+     * The borrows that found every connection of the pool in use.
+     */
+    private final AtomicLong queued = new AtomicLong();
+
+    /**
+     * Instantiates a new Metered data source.
+     *
+     * @param registry the latency registry
+     */
+    public MeteredDataSource(final LatencyRegistry registry) {
+        this.waits = registry.connectionWaits();
+    }
+
+    /**
+     * Borrow a connection.
+     *
+     * @return the connection
+     * @throws SQLException when no connection frees up within the max wait
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = begin();
+        int status = HttpStatus.OK.value();
+        try {
+            return super.getConnection();
+        } catch (SQLException ex) {
+            status = HttpStatus.SERVICE_UNAVAILABLE.value();
+            throw ex;
+        } finally {
+            waits.record(System.nanoTime() - start, status);
+        }
+    }
+
+    /**
+     * Borrow a connection with other credentials.
+     *
+     * @param username the username
+     * @param password the password
+     * @return the connection
+     * @throws SQLException when no connection frees up within the max wait
+     */
+    @Override
+    public Connection getConnection(final String username, final String password)
+            throws SQLException {
+        long start = begin();
+        int status = HttpStatus.OK.value();
+        try {
+            return super.getConnection(username, password);
+        } catch (SQLException ex) {
+            status = HttpStatus.SERVICE_UNAVAILABLE.value();
+            throw ex;
+        } finally {
+            waits.record(System.nanoTime() - start, status);
+        }
+    }
+
+    /**
+     * Gets the borrows that found every connection of the pool in use.
+     *
+     * @return the count since start
+     */
+    public long getQueuedCount() {
+        return queued.get();
+    }
+
+    /**
+     * Pool metrics, the wait percentiles are in microseconds over the last metrics
+     * interval.
+     *
+     * @return the metrics
+     */
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Collection<Metric<?>> metrics = newArrayList();
+        metrics.add(new Metric<Integer>("memo.pool.max", getMaxActive()));
+        ConnectionPool pool = getPool();
+        if (pool != null) {
+            metrics.add(new Metric<Integer>("memo.pool.size", pool.getSize()));
+            metrics.add(new Metric<Integer>("memo.pool.active", pool.getActive()));
+            metrics.add(new Metric<Integer>("memo.pool.idle", pool.getIdle()));
+            metrics.add(new Metric<Integer>("memo.pool.waiting", pool.getWaitCount()));
+        }
+        metrics.add(new Metric<Long>("memo.pool.queued", queued.get()));
+        LatencySnapshot wait = waits.getSnapshot();
+        metrics.add(new Metric<Long>("memo.pool.wait.p50", wait.getP50()));
+        metrics.add(new Metric<Long>("memo.pool.wait.p99", wait.getP99()));
+        metrics.add(new Metric<Long>("memo.pool.wait.max", wait.getMax()));
+        return metrics;
+    }
+
+    /**
+     * Start a borrow, counting it as queued when no connection is free for it.
+     *
+     * @return the start of the borrow in nanoseconds
+     */
+    private long begin() {
+        ConnectionPool pool = getPool();
+        if (pool != null && pool.getIdle() == 0 && pool.getActive() >= getMaxActive()) {
+            queued.incrementAndGet();
+        }
+        return System.nanoTime();
+    }
+}
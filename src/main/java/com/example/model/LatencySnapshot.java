@@ -0,0 +1,64 @@
+package com.example.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * Data Model for the latency and outcome of the calls of one handler or DAO
+ * method. Latencies are in microseconds over the last metrics interval.
+ */
+@Data
+public class LatencySnapshot implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 2846773639244185783L;
+
+    /**
+     * The calls in the last interval.
+     */
+    private long count;
+
+    /**
+     * The calls since start.
+     */
+    private long totalCount;
+
+    /**
+     * The calls per second in the last interval.
+     */
+    private double rate;
+
+    /**
+     * The share of the calls of the last interval that failed, 0 to 1.
+     */
+    private double errorRate;
+
+    /**
+     * The median latency.
+     */
+    private long p50;
+
+    /**
+     * The 99th percentile latency.
+     */
+    private long p99;
+
+    /**
+     * The 99.9th percentile latency.
+     */
+    private long p999;
+
+    /**
+     * The maximum latency.
+     */
+    private long max;
+
+    /**
+     * The calls since start by status code, as in ErrorResponse.code.
+     */
+    private Map<String, Long> statuses;
+}
@@ -1,6 +1,10 @@
 package com.example.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.annotations.Where;
 import org.hibernate.validator.constraints.NotEmpty;
 
 import javax.persistence.Column;
@@ -12,6 +16,7 @@ import javax.persistence.PreUpdate;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
+import javax.persistence.Version;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
 import java.util.Date;
@@ -21,11 +26,13 @@ import java.util.Date;
 //import javax.persistence.Id;
 
 /**
- * Memo Data Model.
+ * Memo Data Model. Deleted memos are kept as inactive rows, for the change feed,
+ * and left out of every entity query.
  */
 @Data
 @Entity
 @Table(name = "MEMOS")
+@Where(clause = "ACTIVE = 'true'")
 public class Memo implements Serializable {
 
     /**
@@ -34,10 +41,23 @@ public class Memo implements Serializable {
     private static final long serialVersionUID = -7846773639244185780L;
 
     /**
-     * The Unique Identifier.
+     * Number of ids reserved per sequence call. It has to match the INCREMENT BY of
+     * memos_id_seq (see setup-db.sql), the pooled optimizer derives the id range
+     * from the value returned by the sequence.
+     */
+    public static final String ID_ALLOCATION_SIZE = "50";
+
+    /**
+     * The Unique Identifier. Allocated from the memos_id_seq sequence in blocks of
+     * {@link #ID_ALLOCATION_SIZE} (pooled optimizer), so inserts do not fetch the
+     * sequence one by one and can be batched.
      */
     @Id
-    @GeneratedValue()
+    @GeneratedValue(generator = "memo_id")
+    @GenericGenerator(name = "memo_id", strategy = "enhanced-sequence", parameters = {
+            @Parameter(name = "sequence_name", value = "memos_id_seq"),
+            @Parameter(name = "increment_size", value = ID_ALLOCATION_SIZE),
+            @Parameter(name = "optimizer", value = "pooled")})
     private Long id;
 
     /**
@@ -78,6 +98,29 @@ public class Memo implements Serializable {
     @Column(insertable = false)
     private Date updated;
 
+    /**
+     * The Version, incremented by every update. A client sending it back on an
+     * update only overwrites the memo it has read.
+     */
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    /**
+     * Whether the memo exists, false once deleted.
+     */
+    @JsonIgnore
+    @Column(nullable = false)
+    private boolean active = true;
+
+    /**
+     * The position of the last write of the memo in the change feed, given by the
+     * change sequence of the database in use.
+     */
+    @JsonIgnore
+    @Column(nullable = false)
+    private Long changeSeq;
+
     /**
      * On create.
      */
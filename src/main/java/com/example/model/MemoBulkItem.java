@@ -0,0 +1,32 @@
+package com.example.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Data Model for the outcome of one memo of a bulk request.
+ */
+@Data
+public class MemoBulkItem implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 3846773639244185781L;
+
+    /**
+     * The position of the memo in the request.
+     */
+    private Integer index;
+
+    /**
+     * The Id of the created memo.
+     */
+    private Long id;
+
+    /**
+     * The Error when the memo was rejected.
+     */
+    private ErrorResponse error;
+}
@@ -0,0 +1,40 @@
+package com.example.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Data Model for an entry of the change feed: a memo created or updated, or the
+ * tombstone of a deleted memo.
+ */
+@Data
+public class MemoChange implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 2846773639244185784L;
+
+    /**
+     * The Id of the memo.
+     */
+    private Long id;
+
+    /**
+     * Whether the memo was deleted.
+     */
+    private boolean deleted;
+
+    /**
+     * The memo as of the change, null when deleted.
+     */
+    private Memo memo;
+
+    /**
+     * The position of the change in the feed.
+     */
+    @JsonIgnore
+    private Long changeSeq;
+}
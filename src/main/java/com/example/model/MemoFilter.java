@@ -0,0 +1,62 @@
+package com.example.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Set;
+
+/**
+ * Data Model for the filters, the order and the projection of a memo listing.
+ * Unset fields do not filter.
+ */
+@Data
+public class MemoFilter implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 3846773639244185783L;
+
+    /**
+     * The author of the memos.
+     */
+    private String author;
+
+    /**
+     * The earliest creation time, inclusive.
+     */
+    private Date createdFrom;
+
+    /**
+     * The latest creation time, exclusive.
+     */
+    private Date createdTo;
+
+    /**
+     * The earliest update time, inclusive.
+     */
+    private Date updatedSince;
+
+    /**
+     * The order, created, updated or title, descending when prefixed with a minus
+     * sign; id order when unset.
+     */
+    private String sort;
+
+    /**
+     * The memo fields to read and return, all of them when unset.
+     */
+    private Set<String> fields;
+
+    /**
+     * Whether any of the author and time filters is set. Without them the filter
+     * matches every memo.
+     *
+     * @return true when the memos are filtered
+     */
+    public boolean hasCriteria() {
+        return author != null || createdFrom != null || createdTo != null
+                || updatedSince != null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * Data Model for the outcome of one id of a multi-get request.
+ */
+@Data
+public class MemoGetItem implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 5846773639244185782L;
+
+    /**
+     * The requested Id.
+     */
+    private Long id;
+
+    /**
+     * The memo, when it exists.
+     */
+    private Memo memo;
+
+    /**
+     * The Error when the memo does not exist.
+     */
+    private ErrorResponse error;
+}
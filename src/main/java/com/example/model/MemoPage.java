@@ -36,4 +36,9 @@ public class MemoPage implements Serializable {
      * The Prev page number.
      */
     private Integer prevPageNumber;
+
+    /**
+     * The memo id to continue after for the next page, in keyset mode.
+     */
+    private Long nextAfterId;
 }
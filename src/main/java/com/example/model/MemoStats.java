@@ -0,0 +1,56 @@
+package com.example.model;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Data Model for the statistics of the memos. The counts are those of the last
+ * refresh adjusted by the writes since; the rates are per second over the last
+ * refresh interval.
+ */
+@Data
+public class MemoStats implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 3846773639244185784L;
+
+    /**
+     * The memos.
+     */
+    private long total;
+
+    /**
+     * The memos of the authors with the most memos, most first.
+     */
+    private Map<String, Long> authors;
+
+    /**
+     * The memos by text length range, in characters.
+     */
+    private Map<String, Long> textSizes;
+
+    /**
+     * The memos created per second.
+     */
+    private double createRate;
+
+    /**
+     * The memos updated per second.
+     */
+    private double updateRate;
+
+    /**
+     * The memos deleted per second.
+     */
+    private double deleteRate;
+
+    /**
+     * When the counts were last read from the database.
+     */
+    private Date refreshed;
+}
@@ -0,0 +1,38 @@
+package com.example.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Data Model for the version of a memo, enough to validate a cached copy
+ * without reading the memo itself.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MemoVersion implements Serializable {
+
+    /**
+     * The constant serialVersionUID.
+     */
+    private static final long serialVersionUID = 4846773639244185782L;
+
+    /**
+     * The Id of the memo.
+     */
+    private Long id;
+
+    /**
+     * The Version of the memo.
+     */
+    private Long version;
+
+    /**
+     * The last time the memo was updated.
+     */
+    private Date updated;
+}
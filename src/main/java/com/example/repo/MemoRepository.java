@@ -1,19 +1,33 @@
 package com.example.repo;
 
 import com.example.model.Memo;
+import com.example.model.MemoVersion;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
 /**
  * Repository to delegate CRUD operations against the data source.
  */
-public interface MemoRepository extends PagingAndSortingRepository<Memo, Long> {
+public interface MemoRepository extends PagingAndSortingRepository<Memo, Long>,
+        JpaSpecificationExecutor<Memo>, MemoRepositoryCustom {
     /**
      * Find all.
      *
      * @param pageable the pageable
      * @return the page
      */
-    Page findAll(Pageable pageable);
+    Page<Memo> findAll(Pageable pageable);
+
+    /**
+     * Find the version of a memo, without reading its text.
+     *
+     * @param id the id
+     * @return the version or null when the memo does not exist
+     */
+    @Query("select new com.example.model.MemoVersion(m.id, m.version, m.updated)"
+            + " from Memo m where m.id = ?1")
+    MemoVersion findVersionById(Long id);
 }
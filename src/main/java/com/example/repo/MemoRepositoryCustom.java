@@ -0,0 +1,56 @@
+package com.example.repo;
+
+import com.example.model.Memo;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memo repository operations that are not derived by Spring Data.
+ */
+public interface MemoRepositoryCustom {
+
+    /**
+     * Update the given fields of a memo with a single UPDATE statement, without
+     * loading it first. The version of the memo is incremented. Deleted memos are
+     * not updated.
+     *
+     * @param id the memo id
+     * @param version the version the memo must still have, null for any version
+     * @param fields the memo attribute names, already validated, and their values
+     * @return the number of memos updated, 0 when the memo does not exist or has
+     * another version
+     */
+    int updateFields(long id, Long version, Map<String, Object> fields);
+
+    /**
+     * Update the given fields of many memos with a single UPDATE statement. The
+     * version of each memo is incremented. Deleted memos are not updated: the
+     * active memos among the ids are locked first, then updated.
+     *
+     * @param ids the memo ids
+     * @param fields the memo attribute names, already validated, and their values
+     * @return the ids of the memos updated
+     */
+    List<Long> updateFields(Collection<Long> ids, Map<String, Object> fields);
+
+    /**
+     * Find a slice of the memos matching a specification, in the order of the
+     * pageable. No count query is issued, one extra row is fetched to tell whether
+     * there is a next slice. When fields are given only those columns, plus the id
+     * and the version, are read and set on the memos returned, which are not
+     * managed.
+     *
+     * @param spec the specification, null for all memos
+     * @param pageable the pageable
+     * @param fields the memo attribute names to read, already validated, null for
+     * the whole memos
+     * @return the slice
+     */
+    Slice<Memo> findSlice(Specification<Memo> spec, Pageable pageable,
+                          Collection<String> fields);
+}
@@ -0,0 +1,207 @@
+package com.example.repo;
+
+import com.example.model.Memo;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.data.jpa.repository.query.QueryUtils.toOrders;
+
+/**
+ * Implementation of the custom memo repository operations.
+ */
+public class MemoRepositoryImpl implements MemoRepositoryCustom {
+
+    /**
+     * The attributes every projection reads, to identify the memos and validate
+     * the listings.
+     */
+    private static final List<String> PROJECTION_KEYS = Arrays.asList("id", "version");
+
+    /**
+     * The entity manager.
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Update fields.
+     *
+     * @param id      the memo id
+     * @param version the expected version
+     * @param fields  the fields
+     * @return the number of memos updated
+     */
+    @Override
+    @Transactional
+    public int updateFields(final long id, final Long version,
+                            final Map<String, Object> fields) {
+        String where = "m.id = :id";
+        if (version != null) {
+            where += " and m.version = :version";
+        }
+        Query query = update(fields, where);
+        query.setParameter("id", id);
+        if (version != null) {
+            query.setParameter("version", version);
+        }
+        return query.executeUpdate();
+    }
+
+    /**
+     * Update fields of many memos. The active memos are locked before the update,
+     * so the ids returned are the ones it changed.
+     *
+     * @param ids    the memo ids
+     * @param fields the fields
+     * @return the ids of the memos updated
+     */
+    @Override
+    @Transactional
+    public List<Long> updateFields(final Collection<Long> ids,
+                                   final Map<String, Object> fields) {
+        List<Long> active = entityManager.createQuery("select m.id from Memo m"
+                + " where m.id in :ids and m.active = true", Long.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList();
+        if (active.isEmpty()) {
+            return active;
+        }
+        Query query = update(fields, "m.id in :ids");
+        query.setParameter("ids", active);
+        query.executeUpdate();
+        return active;
+    }
+
+    /**
+     * Build an UPDATE statement of active memos, incrementing their version.
+     *
+     * @param fields the fields and their values
+     * @param where  the restriction on the memos, besides being active
+     * @return the query, with the field values bound
+     */
+    private Query update(final Map<String, Object> fields, final String where) {
+        StringBuilder jpql = new StringBuilder("update Memo m set ");
+        for (String field : fields.keySet()) {
+            jpql.append("m.").append(field).append(" = :").append(field).append(", ");
+        }
+        jpql.append("m.version = m.version + 1 where ").append(where)
+                .append(" and m.active = true");
+
+        Query query = entityManager.createQuery(jpql.toString());
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            query.setParameter(field.getKey(), field.getValue());
+        }
+        return query;
+    }
+
+    /**
+     * Find slice, of entities or, when fields are given, of a tuple projection.
+     *
+     * @param spec     the specification
+     * @param pageable the pageable
+     * @param fields   the attributes to read, null for the whole memos
+     * @return the slice
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Memo> findSlice(final Specification<Memo> spec,
+                                 final Pageable pageable,
+                                 final Collection<String> fields) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        List<Memo> memos;
+        if (fields == null) {
+            CriteriaQuery<Memo> criteria = cb.createQuery(Memo.class);
+            Root<Memo> root = criteria.from(Memo.class);
+            restrict(criteria, root, cb, spec, pageable);
+            memos = page(entityManager.createQuery(criteria), pageable).getResultList();
+        } else {
+            Set<String> attributes = new LinkedHashSet<>(PROJECTION_KEYS);
+            attributes.addAll(fields);
+            CriteriaQuery<Tuple> criteria = cb.createTupleQuery();
+            Root<Memo> root = criteria.from(Memo.class);
+            List<Selection<?>> selections = new ArrayList<>(attributes.size());
+            for (String attribute : attributes) {
+                selections.add(root.get(attribute).alias(attribute));
+            }
+            criteria.multiselect(selections);
+            restrict(criteria, root, cb, spec, pageable);
+
+            memos = new ArrayList<>();
+            for (Tuple row : page(entityManager.createQuery(criteria), pageable)
+                    .getResultList()) {
+                Memo memo = new Memo();
+                BeanWrapper bean = PropertyAccessorFactory.forBeanPropertyAccess(memo);
+                for (String attribute : attributes) {
+                    bean.setPropertyValue(attribute, row.get(attribute));
+                }
+                memos.add(memo);
+            }
+        }
+        boolean hasNext = memos.size() > pageable.getPageSize();
+        if (hasNext) {
+            memos = memos.subList(0, pageable.getPageSize());
+        }
+        return new SliceImpl<>(memos, pageable, hasNext);
+    }
+
+    /**
+     * Apply the specification and the order of the pageable to a query.
+     *
+     * @param criteria the query
+     * @param root     the memo root
+     * @param cb       the criteria builder
+     * @param spec     the specification, null for all memos
+     * @param pageable the pageable
+     */
+    private static void restrict(final CriteriaQuery<?> criteria, final Root<Memo> root,
+                                 final CriteriaBuilder cb,
+                                 final Specification<Memo> spec,
+                                 final Pageable pageable) {
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, criteria, cb);
+            if (predicate != null) {
+                criteria.where(predicate);
+            }
+        }
+        criteria.orderBy(toOrders(pageable.getSort(), root, cb));
+    }
+
+    /**
+     * Limit a query to the page, plus one row to tell whether there is a next one.
+     *
+     * @param query    the query
+     * @param pageable the pageable
+     * @param <T>      the type of the results
+     * @return the query
+     */
+    private static <T> TypedQuery<T> page(final TypedQuery<T> query,
+                                          final Pageable pageable) {
+        return query.setFirstResult(pageable.getOffset())
+                .setMaxResults(pageable.getPageSize() + 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.repo;
+
+import com.example.model.Memo;
+import com.example.model.MemoFilter;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.domain.Specifications;
+
+import java.util.Date;
+
+/**
+ * Specifications of the memo listings. Each filter is a plain comparison on one
+ * column, so the lists can be read from the composite indexes of setup-db.sql.
+ */
+public final class MemoSpecifications {
+
+    /**
+     * Hidden constructor for the utility class.
+     */
+    private MemoSpecifications() {
+    }
+
+    /**
+     * The memos matching a filter; the order of the filter is not applied here.
+     *
+     * @param filter the filter
+     * @return the specification
+     */
+    public static Specification<Memo> matching(final MemoFilter filter) {
+        Specifications<Memo> spec = Specifications.where(null);
+        if (filter.getAuthor() != null) {
+            spec = spec.and(authorIs(filter.getAuthor()));
+        }
+        if (filter.getCreatedFrom() != null) {
+            spec = spec.and(createdFrom(filter.getCreatedFrom()));
+        }
+        if (filter.getCreatedTo() != null) {
+            spec = spec.and(createdBefore(filter.getCreatedTo()));
+        }
+        if (filter.getUpdatedSince() != null) {
+            spec = spec.and(updatedSince(filter.getUpdatedSince()));
+        }
+        return spec;
+    }
+
+    /**
+     * The memos of an author.
+     *
+     * @param author the author
+     * @return the specification
+     */
+    public static Specification<Memo> authorIs(final String author) {
+        return (root, query, cb) -> cb.equal(root.get("author"), author);
+    }
+
+    /**
+     * The memos created at or after a time.
+     *
+     * @param from the time
+     * @return the specification
+     */
+    public static Specification<Memo> createdFrom(final Date from) {
+        return (root, query, cb) ->
+                cb.greaterThanOrEqualTo(root.<Date>get("created"), from);
+    }
+
+    /**
+     * The memos created before a time.
+     *
+     * @param to the time
+     * @return the specification
+     */
+    public static Specification<Memo> createdBefore(final Date to) {
+        return (root, query, cb) -> cb.lessThan(root.<Date>get("created"), to);
+    }
+
+    /**
+     * The memos updated at or after a time.
+     *
+     * @param since the time
+     * @return the specification
+     */
+    public static Specification<Memo> updatedSince(final Date since) {
+        return (root, query, cb) ->
+                cb.greaterThanOrEqualTo(root.<Date>get("updated"), since);
+    }
+
+    /**
+     * The memos with an id greater than the given one, for keyset pagination.
+     *
+     * @param id the id to seek after
+     * @return the specification
+     */
+    public static Specification<Memo> idGreaterThan(final long id) {
+        return (root, query, cb) -> cb.greaterThan(root.<Long>get("id"), id);
+    }
+}
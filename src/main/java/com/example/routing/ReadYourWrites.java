@@ -0,0 +1,298 @@
+package com.example.routing;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Read-your-writes window of the clients. A write sets a cookie on its response
+ * holding when the window of the client closes; the requests carrying it read
+ * from the primary database until then, so the client sees its write even when
+ * the replicas lag behind. The window travels with the client, so clients behind
+ * one address are told apart and any instance serving the client honours it.
+ * The cookie is signed with a secret the instances share, so a client cannot
+ * forge one to keep its reads on the primary. Calls made outside of a request
+ * share one local window.
+ */
+@Component
+public class ReadYourWrites extends OncePerRequestFilter {
+
+    /**
+     * Name of the cookie holding when the window closes, in epoch milliseconds,
+     * followed by its signature.
+     */
+    public static final String COOKIE = "memo-read-your-writes";
+
+    /**
+     * The algorithm signing the cookie.
+     */
+    private static final String SIGNATURE = "HmacSHA256";
+
+    /**
+     * The bytes of the secret generated when none is configured.
+     */
+    private static final int SECRET_BYTES = 32;
+
+    /**
+     * Separates the time from the signature in the cookie.
+     */
+    private static final char SEPARATOR = '.';
+
+    /**
+     * Encodes the signature in the cookie.
+     */
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    /**
+     * The window of the current thread.
+     */
+    private final ThreadLocal<Window> window = new ThreadLocal<>();
+
+    /**
+     * When the local window closes, in epoch milliseconds.
+     */
+    private final AtomicLong localUntil = new AtomicLong();
+
+    /**
+     * How long the reads of a client go to the primary after its write.
+     */
+    private final long windowMillis;
+
+    /**
+     * The key signing the cookie.
+     */
+    private final SecretKeySpec key;
+
+    /**
+     * Instantiates a new Read your writes.
+     *
+     * @param millis how long the reads of a client go to the primary after its
+     *               write, 0 disables the window
+     * @param secret the secret signing the cookie, shared by the instances; when
+     *               empty one is generated, and only this instance honours the
+     *               cookies it sets
+     */
+    @Autowired
+    public ReadYourWrites(@Value("${memo.replicas.read-your-writes-ms:5000}")
+                          final long millis,
+                          @Value("${memo.replicas.read-your-writes-secret:}")
+                          final String secret) {
+        this.windowMillis = millis;
+        byte[] bytes;
+        if (secret == null || secret.isEmpty()) {
+            bytes = new byte[SECRET_BYTES];
+            new SecureRandom().nextBytes(bytes);
+        } else {
+            bytes = secret.getBytes(Charsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(bytes, SIGNATURE);
+    }
+
+    /**
+     * Bind the window of the request cookie, and the response to set it on, to the
+     * thread serving the request.
+     *
+     * @param request  the request
+     * @param response the response
+     * @param chain    the chain
+     * @throws ServletException the servlet exception
+     * @throws IOException      the io exception
+     */
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request,
+                                    final HttpServletResponse response,
+                                    final FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getContextPath();
+        if (path.isEmpty()) {
+            path = "/";
+        }
+        window.set(new Window(until(request), path, response));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            window.remove();
+        }
+    }
+
+    /**
+     * Wrap a task to run within the window of the current thread on another thread.
+     * The task is not handed the response.
+     *
+     * @param task the task
+     * @param <T>  the type of the result
+     * @return the task bound to the window
+     */
+    public <T> Callable<T> bind(final Callable<T> task) {
+        long until = until();
+        return () -> {
+            Window previous = window.get();
+            window.set(new Window(until, null, null));
+            try {
+                return task.call();
+            } finally {
+                window.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Open the window of the client of the current thread, and send it the cookie
+     * when on the thread serving its request.
+     */
+    public void wrote() {
+        if (windowMillis <= 0) {
+            return;
+        }
+        long until = System.currentTimeMillis() + windowMillis;
+        Window current = window.get();
+        if (current == null) {
+            localUntil.accumulateAndGet(until, Math::max);
+            return;
+        }
+        current.until = until;
+        if (current.response != null && !current.response.isCommitted()) {
+            String value = Long.toString(until);
+            Cookie cookie = new Cookie(COOKIE, value + SEPARATOR + sign(value));
+            cookie.setPath(current.path);
+            cookie.setMaxAge((int) TimeUnit.MILLISECONDS.toSeconds(windowMillis) + 1);
+            cookie.setHttpOnly(true);
+            current.response.addCookie(cookie);
+        }
+    }
+
+    /**
+     * Whether the client of the current thread wrote within the window.
+     *
+     * @return true when its reads have to go to the primary
+     */
+    public boolean isOpen() {
+        return until() > System.currentTimeMillis();
+    }
+
+    /**
+     * Gets when the window of the current thread closes.
+     *
+     * @return the time in epoch milliseconds
+     */
+    private long until() {
+        Window current = window.get();
+        if (current == null) {
+            return localUntil.get();
+        }
+        return current.until;
+    }
+
+    /**
+     * Read when the window closes from the cookie of a request. The cookie comes
+     * from the client: one without a valid signature, with a time in the past or
+     * that does not parse closes the window, and a window is at most as long as
+     * the one a write opens now.
+     *
+     * @param request the request
+     * @return the time in epoch milliseconds, 0 without a valid cookie
+     */
+    private long until(final HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0L;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                String value = cookie.getValue();
+                if (value == null || value.lastIndexOf(SEPARATOR) < 0) {
+                    return 0L;
+                }
+                int separator = value.lastIndexOf(SEPARATOR);
+                String time = value.substring(0, separator);
+                byte[] signature = sign(time).getBytes(Charsets.US_ASCII);
+                byte[] given = value.substring(separator + 1).getBytes(Charsets.US_ASCII);
+                if (!MessageDigest.isEqual(signature, given)) {
+                    return 0L;
+                }
+                long until;
+                try {
+                    until = Long.parseLong(time);
+                } catch (NumberFormatException ex) {
+                    return 0L;
+                }
+                long now = System.currentTimeMillis();
+                if (until <= now) {
+                    return 0L;
+                }
+                return Math.min(until, now + windowMillis);
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Sign the value of the cookie.
+     *
+     * @param value the time the window closes
+     * @return the encoded signature
+     */
+    private String sign(final String value) {
+        try {
+            Mac mac = Mac.getInstance(SIGNATURE);
+            mac.init(key);
+            return ENCODING.encode(mac.doFinal(value.getBytes(Charsets.UTF_8)));
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(
+                    "Cannot sign the read-your-writes cookie", ex);
+        }
+    }
+
+    /**
+     * The window of the client of a thread.
+     */
+    private static final class Window {
+
+        /**
+         * When the window closes, in epoch milliseconds.
+         */
+        private long until;
+
+        /**
+         * The path of the cookie.
+         */
+        private final String path;
+
+        /**
+         * The response to set the cookie on, null off the request thread.
+         */
+        private final HttpServletResponse response;
+
+        /**
+         * Instantiates a new Window.
+         *
+         * @param closes     when the window closes
+         * @param cookiePath the path of the cookie
+         * @param resp       the response to set the cookie on
+         */
+        private Window(final long closes, final String cookiePath,
+                       final HttpServletResponse resp) {
+            this.until = closes;
+            this.path = cookiePath;
+            this.response = resp;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.routing;
+
+import org.aspectj.lang.annotation.After;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens the read-your-writes window of the client after every DAO client write,
+ * failed writes included as they may have been partly applied.
+ */
+@Aspect
+@Component
+public class ReadYourWritesAspect {
+
+    /**
+     * The read-your-writes window.
+     */
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    /**
+     * Open the window after a write.
+     */
+    @After("execution(* com.example.api.client.DAOClient.create*(..))"
+            + " || execution(* com.example.api.client.DAOClient.update*(..))"
+            + " || execution(* com.example.api.client.DAOClient.patch*(..))"
+            + " || execution(* com.example.api.client.DAOClient.delete*(..))")
+    public void wrote() {
+        readYourWrites.wrote();
+    }
+}
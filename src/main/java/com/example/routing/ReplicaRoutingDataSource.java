@@ -0,0 +1,183 @@
+package com.example.routing;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.DataSourceProxy;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Data source sending the read only transactions to the replicas and everything
+ * else to the primary. Reads of a client within its read-your-writes window stay
+ * on the primary. The transaction has to be known before a connection is taken,
+ * so this data source is used behind a lazy connection proxy.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource
+        implements DisposableBean {
+
+    /**
+     * How a replica is picked for a read.
+     */
+    public enum Selection {
+
+        /**
+         * Each replica in turn.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * The replica with the fewest connections in use.
+         */
+        LEAST_CONNECTIONS;
+
+        /**
+         * Parse a selection as configured, such as least-connections.
+         *
+         * @param value the value
+         * @return the selection
+         */
+        public static Selection parse(final String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * The primary.
+     */
+    private final DataSource primary;
+
+    /**
+     * The replica pools.
+     */
+    private final List<DataSource> replicas;
+
+    /**
+     * How a replica is picked.
+     */
+    private final Selection selection;
+
+    /**
+     * The read-your-writes window.
+     */
+    private final ReadYourWrites readYourWrites;
+
+    /**
+     * The turn of the round robin.
+     */
+    private final AtomicInteger turn = new AtomicInteger();
+
+    /**
+     * Instantiates a new Replica routing data source.
+     *
+     * @param primaryDataSource the primary
+     * @param replicaPools      the replica pools, closed with this data source
+     * @param replicaSelection  how a replica is picked
+     * @param window            the read-your-writes window
+     */
+    public ReplicaRoutingDataSource(final DataSource primaryDataSource,
+                                    final List<DataSource> replicaPools,
+                                    final Selection replicaSelection,
+                                    final ReadYourWrites window) {
+        this.primary = primaryDataSource;
+        this.replicas = replicaPools;
+        this.selection = replicaSelection;
+        this.readYourWrites = window;
+    }
+
+    /**
+     * Gets a connection of the primary or of a replica.
+     *
+     * @return the connection
+     * @throws SQLException the sql exception
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route().getConnection();
+    }
+
+    /**
+     * Gets a connection of the primary or of a replica with other credentials.
+     *
+     * @param username the username
+     * @param password the password
+     * @return the connection
+     * @throws SQLException the sql exception
+     */
+    @Override
+    public Connection getConnection(final String username, final String password)
+            throws SQLException {
+        return route().getConnection(username, password);
+    }
+
+    /**
+     * Close the replica pools.
+     */
+    @Override
+    public void destroy() {
+        for (DataSource replica : replicas) {
+            if (replica instanceof DataSourceProxy) {
+                ((DataSourceProxy) replica).close();
+            }
+        }
+    }
+
+    /**
+     * Whether a read only transaction of the client of the current thread goes to
+     * a replica, so that what it reads may lag behind the primary.
+     *
+     * @return true when there are replicas and the client did not write within
+     * the window
+     */
+    public boolean readsReplica() {
+        return !replicas.isEmpty() && !readYourWrites.isOpen();
+    }
+
+    /**
+     * Pick the data source of the current transaction.
+     *
+     * @return the primary, unless the transaction is read only and its client did
+     * not write within the window
+     */
+    DataSource route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || !readsReplica()) {
+            return primary;
+        }
+        if (selection == Selection.LEAST_CONNECTIONS) {
+            return leastConnections();
+        }
+        return replicas.get(Math.floorMod(turn.getAndIncrement(), replicas.size()));
+    }
+
+    /**
+     * Pick the replica with the fewest connections in use, the first one on a tie.
+     * Replicas that are not Tomcat pools count as idle.
+     *
+     * @return the replica
+     */
+    private DataSource leastConnections() {
+        DataSource least = null;
+        int leastActive = Integer.MAX_VALUE;
+        for (DataSource replica : replicas) {
+            int active = 0;
+            if (replica instanceof DataSourceProxy) {
+                ConnectionPool pool = ((DataSourceProxy) replica).getPool();
+                if (pool != null) {
+                    active = pool.getActive();
+                }
+            }
+            if (active < leastActive) {
+                least = replica;
+                leastActive = active;
+            }
+        }
+        return least;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+  Add the change feed to an existing memos table. Deleted memos are now kept as
+  inactive rows, and every write sets CHANGE_SEQ to the id of its transaction,
+  in its own statement; the existing memos are put at the start of the feed.
+ */
+UPDATE memos SET ACTIVE = TRUE WHERE ACTIVE IS NULL;
+ALTER TABLE memos ALTER COLUMN ACTIVE SET NOT NULL;
+
+ALTER TABLE memos ADD COLUMN CHANGE_SEQ BIGINT;
+UPDATE memos SET CHANGE_SEQ = txid_current() WHERE CHANGE_SEQ IS NULL;
+ALTER TABLE memos ALTER COLUMN CHANGE_SEQ SET DEFAULT txid_current();
+ALTER TABLE memos ALTER COLUMN CHANGE_SEQ SET NOT NULL;
+
+CREATE FUNCTION memos_change_seq() RETURNS TRIGGER AS $$
+BEGIN
+  NEW.CHANGE_SEQ := txid_current();
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER memos_change_seq BEFORE INSERT OR UPDATE ON memos
+  FOR EACH ROW EXECUTE PROCEDURE memos_change_seq();
+
+CREATE INDEX memos_change_idx ON memos (CHANGE_SEQ, ID);
@@ -0,0 +1,14 @@
+/*
+  Move an existing memos table to ids allocated from memos_id_seq by the pooled
+  optimizer. The increment must match Memo.ID_ALLOCATION_SIZE.
+
+  The optimizer hands out the block ending at the value returned by the
+  sequence, so the sequence restarts one full block after the highest id.
+ */
+CREATE SEQUENCE IF NOT EXISTS memos_id_seq;
+ALTER SEQUENCE memos_id_seq INCREMENT BY 50;
+SELECT setval('memos_id_seq', (SELECT COALESCE(MAX(id), 0) + 50 FROM memos), false);
+
+ALTER TABLE memos ALTER COLUMN id TYPE BIGINT;
+ALTER TABLE memos ALTER COLUMN id SET DEFAULT nextval('memos_id_seq');
+DROP SEQUENCE IF EXISTS serial;
@@ -0,0 +1,9 @@
+/*
+  Add the indexes of the filtered and sorted listings to an existing memos table.
+  Built concurrently so writes go on while they are created.
+ */
+CREATE INDEX CONCURRENTLY IF NOT EXISTS memos_author_created_idx ON memos (AUTHOR, CREATED, ID);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS memos_author_updated_idx ON memos (AUTHOR, UPDATED, ID);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS memos_created_idx ON memos (CREATED, ID);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS memos_updated_idx ON memos (UPDATED, ID);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS memos_title_idx ON memos (TITLE, ID);
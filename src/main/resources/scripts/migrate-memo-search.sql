@@ -0,0 +1,10 @@
+/*
+  Add the full-text search index to an existing memos table. The expression must
+  match PostgresMemoSearch.DOCUMENT for the searches to use the index. Built
+  concurrently so writes go on while it is created.
+ */
+CREATE INDEX CONCURRENTLY IF NOT EXISTS memos_search_idx ON memos USING GIN (
+  (setweight(to_tsvector('english', TITLE), 'A')
+    || setweight(to_tsvector('english', AUTHOR), 'B')
+    || setweight(to_tsvector('english', TEXT), 'C'))
+);
@@ -0,0 +1,5 @@
+/*
+  Add the optimistic locking version of Memo to an existing memos table. Every
+  update increments it; existing rows start at 0.
+ */
+ALTER TABLE memos ADD COLUMN VERSION BIGINT NOT NULL DEFAULT 0;
@@ -2,20 +2,69 @@
   Clean the existing mess.
  */
 DROP TABLE memos;
-DROP SEQUENCE serial;
+DROP SEQUENCE memos_id_seq;
+DROP FUNCTION memos_change_seq();
 
 /*
   Create the new schemas.
  */
 
-CREATE SEQUENCE serial START 1;
+/*
+  Memo ids are allocated by Hibernate in blocks with the pooled optimizer. The
+  increment must match Memo.ID_ALLOCATION_SIZE; existing databases are moved
+  over with migrate-memo-id-sequence.sql.
+ */
+CREATE SEQUENCE memos_id_seq START 1 INCREMENT BY 50;
+
 CREATE TABLE memos
 (
-  ID      SERIAL PRIMARY KEY,
+  ID      BIGINT PRIMARY KEY DEFAULT nextval('memos_id_seq'),
   TITLE   VARCHAR(40) NOT NULL,
   AUTHOR  VARCHAR(40) NOT NULL,
   TEXT    TEXT        NOT NULL,
-  ACTIVE  BOOLEAN   DEFAULT TRUE,
+  ACTIVE  BOOLEAN   NOT NULL DEFAULT TRUE,
   CREATED TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-  UPDATED TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
\ No newline at end of file
+  UPDATED TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  VERSION BIGINT    NOT NULL DEFAULT 0,
+  CHANGE_SEQ BIGINT  NOT NULL DEFAULT txid_current()
+);
+
+/*
+  Positions of the writes in the change feed: the id of the writing transaction,
+  set in the statement of the write. The feed is served below the oldest running
+  transaction, see PostgresChangeSequence.
+ */
+CREATE FUNCTION memos_change_seq() RETURNS TRIGGER AS $$
+BEGIN
+  NEW.CHANGE_SEQ := txid_current();
+  RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER memos_change_seq BEFORE INSERT OR UPDATE ON memos
+  FOR EACH ROW EXECUTE PROCEDURE memos_change_seq();
+
+/*
+  Change feed, read in (CHANGE_SEQ, ID) order after the token of the client.
+ */
+CREATE INDEX memos_change_idx ON memos (CHANGE_SEQ, ID);
+
+/*
+  Indexes of the filtered and sorted listings. The id ends every index as the
+  tie-breaker of the order, so a page is read as one index range scan.
+ */
+CREATE INDEX memos_author_created_idx ON memos (AUTHOR, CREATED, ID);
+CREATE INDEX memos_author_updated_idx ON memos (AUTHOR, UPDATED, ID);
+CREATE INDEX memos_created_idx ON memos (CREATED, ID);
+CREATE INDEX memos_updated_idx ON memos (UPDATED, ID);
+CREATE INDEX memos_title_idx ON memos (TITLE, ID);
+
+/*
+  Full-text search of memos. The expression must match PostgresMemoSearch.DOCUMENT
+  for the searches to use the index.
+ */
+CREATE INDEX memos_search_idx ON memos USING GIN (
+  (setweight(to_tsvector('english', TITLE), 'A')
+    || setweight(to_tsvector('english', AUTHOR), 'B')
+    || setweight(to_tsvector('english', TEXT), 'C'))
+);
@@ -0,0 +1,44 @@
+package com.example.controller.rest;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+
+/**
+ * Performs the requests of the controller tests, following the async dispatch of
+ * the memo reads.
+ */
+public final class AsyncMvc {
+
+    /**
+     * Not instantiated.
+     */
+    private AsyncMvc() {
+    }
+
+    /**
+     * Perform a request and, when it started an async read, wait for the read and
+     * perform its dispatch. The result actions of the dispatch are returned as they
+     * are, so the status and headers asserted are the ones the dispatch set.
+     *
+     * @param mockMvc the mock MVC
+     * @param request the request
+     *
+     * @return the result actions of the request, or of its dispatch when async
+     * @throws Exception the exception
+     */
+    public static ResultActions perform(final MockMvc mockMvc,
+                                        final RequestBuilder request) throws Exception {
+        ResultActions actions = mockMvc.perform(request);
+        MvcResult result = actions.andReturn();
+        if (result.getRequest().getAsyncContext() == null) {
+            return actions;
+        }
+        // Wait for the read to complete before dispatching.
+        result.getAsyncResult();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
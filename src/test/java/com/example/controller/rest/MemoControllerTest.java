@@ -2,12 +2,27 @@ package com.example.controller.rest;
 
 import com.example.MemoBootApplication;
 import com.example.api.client.DAOClient;
+import com.example.compression.CompressionFilter;
+import com.example.exception.InvalidArgumentException;
+import com.example.exception.ServiceUnavailableException;
+import com.example.model.ErrorResponse;
 import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import com.example.model.MemoChange;
+import com.example.model.MemoFilter;
+import com.example.model.MemoGetItem;
 import com.example.model.MemoPage;
+import com.example.model.MemoStats;
+import com.example.model.MemoVersion;
+import com.example.routing.ReadYourWrites;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
@@ -15,27 +30,52 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.util.NestedServletException;
 
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newLinkedHashSet;
 import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -53,6 +93,18 @@ public class MemoControllerTest {
     @Autowired
     private WebApplicationContext context;
 
+    /**
+     * The compression filter.
+     */
+    @Autowired
+    private CompressionFilter compressionFilter;
+
+    /**
+     * The read-your-writes window.
+     */
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
     /**
      * Mock MVC for Unit Testing
      */
@@ -69,6 +121,24 @@ public class MemoControllerTest {
     @Mock
     private DAOClient daoClient;
 
+    /**
+     * Captures the memos handed to the DAO client.
+     */
+    @Captor
+    private ArgumentCaptor<List<Memo>> memosCaptor;
+
+    /**
+     * Captures the ids handed to the DAO client.
+     */
+    @Captor
+    private ArgumentCaptor<List<Long>> idsCaptor;
+
+    /**
+     * Captures the consumer the DAO client streams the memos to.
+     */
+    @Captor
+    private ArgumentCaptor<Consumer<Memo>> consumerCaptor;
+
     /**
      * Location pattern.
      *
@@ -86,12 +156,29 @@ public class MemoControllerTest {
         };
     }
 
+    /**
+     * Perform a request, following the async dispatch of the memo reads.
+     *
+     * @param request the request
+     *
+     * @return the result actions of the complete request
+     * @throws Exception the exception
+     */
+    private ResultActions perform(final RequestBuilder request) throws Exception {
+        return AsyncMvc.perform(mvc, request);
+    }
+
     /**
      * Set up the tests.
      */
     @Before
     public void setUp() {
         MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(memoController, "dbExecutor", new SyncTaskExecutor());
+        ReflectionTestUtils.setField(memoController, "readYourWrites", readYourWrites);
+        ReflectionTestUtils.setField(memoController, "bulkMaxItems", 1000);
+        ReflectionTestUtils.setField(memoController, "mgetMaxIds", 1000);
+        ReflectionTestUtils.setField(memoController, "pageMaxLimit", 1000);
         mvc = MockMvcBuilders.standaloneSetup(memoController).build();
 
 //
@@ -118,7 +205,7 @@ public class MemoControllerTest {
 
         Mockito.when(daoClient.createMemo(Matchers.any(Memo.class))).thenReturn(memo);
 
-        mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -154,7 +241,7 @@ public class MemoControllerTest {
 
         Mockito.when(daoClient.createMemo(Matchers.any(Memo.class))).thenReturn(memo);
         // Test for JSON Happy Path
-        MvcResult mvcResult = mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        MvcResult mvcResult = perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_XML)
                 .characterEncoding("UTF-8")
@@ -176,7 +263,7 @@ public class MemoControllerTest {
     public void testCreateMemoWithBadData() throws Exception {
         Mockito.when(daoClient.createMemo(Matchers.any(Memo.class))).thenReturn(null);
 
-        mvc.perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
+        perform(post(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -186,6 +273,49 @@ public class MemoControllerTest {
     }
 
 
+    /**
+     * Create memos in bulk from a JSON array and from NDJSON.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testCreateMemosBulkHappy() throws Exception {
+        MemoBulkItem created = new MemoBulkItem();
+        created.setIndex(0);
+        created.setId(1L);
+        MemoBulkItem rejected = new MemoBulkItem();
+        rejected.setIndex(1);
+        ErrorResponse error = new ErrorResponse();
+        error.setCode("400");
+        rejected.setError(error);
+
+        Mockito.when(daoClient.createMemos(Matchers.anyListOf(Memo.class)))
+                .thenReturn(newArrayList(created, rejected));
+
+        perform(post(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.BULK)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8")
+                .content("[{\"title\":\"some title\",\"text\":\"some text\",\"author\":\"an author\"}," +
+                        "{\"title\":\"some title\",\"author\":\"an author\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":[{\"index\":0,\"id\":1,\"error\":null}," +
+                        "{\"index\":1,\"id\":null,\"error\":{\"code\":\"400\"}}]}"));
+
+        perform(post(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.BULK)
+                .contentType(MemoController.NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8")
+                .content("{\"title\":\"some title\",\"text\":\"some text\",\"author\":\"an author\"}\n" +
+                        "{\"title\":\"some title\",\"author\":\"an author\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"index\":1")));
+
+        Mockito.verify(daoClient, Mockito.times(2)).createMemos(memosCaptor.capture());
+        Assert.assertEquals(2, memosCaptor.getValue().size());
+        Assert.assertEquals("some text", memosCaptor.getValue().get(0).getText());
+    }
+
     /**
      * Gets memo test.
      *
@@ -203,7 +333,7 @@ public class MemoControllerTest {
 
         Mockito.when(daoClient.getMemo(Matchers.anyLong())).thenReturn(memo);
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8"))
@@ -214,6 +344,123 @@ public class MemoControllerTest {
                         "\"errors\":null}"));
     }
 
+    /**
+     * Gets memo test, the response carries the validators of the memo.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemoValidators() throws Exception {
+        Memo memo = new Memo();
+        memo.setId(1L);
+        memo.setVersion(3L);
+        memo.setText("text");
+        memo.setAuthor("author");
+        memo.setTitle("title");
+        memo.setUpdated(new Date(1442033000099L));
+
+        Mockito.when(daoClient.getMemo(1L)).thenReturn(memo);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(header().string("Last-Modified", "Sat, 12 Sep 2015 04:43:20 GMT"));
+        Mockito.verify(daoClient, Mockito.never()).getMemoVersion(Matchers.anyLong());
+    }
+
+    /**
+     * Gets memo test with a current ETag, answered from the version alone.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemoNotModified() throws Exception {
+        Mockito.when(daoClient.getMemoVersion(1L))
+                .thenReturn(new MemoVersion(1L, 3L, new Date(1442033000099L)));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header("If-None-Match", "\"1-2\", \"1-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"1-3\""))
+                .andExpect(content().string(""));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header("If-Modified-Since", new Date(1442033000000L)))
+                .andExpect(status().isNotModified());
+
+        Mockito.verify(daoClient, Mockito.never()).getMemo(Matchers.anyLong());
+    }
+
+    /**
+     * Compresses a tagged body, the encoded body is sent with the weak form of the
+     * ETag, which like the suffixed form of a compressing proxy validates the memo.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testCompressedETag() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("Some text that repeats itself. ");
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/");
+        request.addHeader("Accept-Encoding", "gzip");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        compressionFilter.doFilter(request, response, new MockFilterChain(
+                new HttpServlet() {
+                    @Override
+                    protected void service(final HttpServletRequest req,
+                                           final HttpServletResponse resp)
+                            throws IOException {
+                        resp.setContentType(MediaType.TEXT_PLAIN_VALUE);
+                        resp.setHeader("ETag", "\"1-3\"");
+                        resp.getWriter().write(text.toString());
+                    }
+                }));
+        Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        Assert.assertEquals("W/\"1-3\"", response.getHeader("ETag"));
+
+        Mockito.when(daoClient.getMemoVersion(1L))
+                .thenReturn(new MemoVersion(1L, 3L, null));
+        for (String tag : Arrays.asList("W/\"1-3\"", "\"1-3-gzip\"", "W/\"1-3-deflate\"")) {
+            perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .header("If-None-Match", tag))
+                    .andExpect(status().isNotModified());
+        }
+        Mockito.verify(daoClient, Mockito.never()).getMemo(Matchers.anyLong());
+    }
+
+    /**
+     * Gets memo test with an outdated ETag.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemoModified() throws Exception {
+        Memo memo = new Memo();
+        memo.setId(1L);
+        memo.setVersion(4L);
+        memo.setText("text");
+        memo.setAuthor("author");
+        memo.setTitle("title");
+
+        Mockito.when(daoClient.getMemoVersion(1L))
+                .thenReturn(new MemoVersion(1L, 4L, null));
+        Mockito.when(daoClient.getMemo(1L)).thenReturn(memo);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .accept(MediaType.APPLICATION_JSON)
+                .header("If-None-Match", "\"1-3\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1-4\""))
+                .andExpect(content().string(containsString("\"title\":\"title\"")));
+    }
+
     /**
      * Gets memos test 1.
      *
@@ -277,10 +524,11 @@ public class MemoControllerTest {
         page.setTotalMemosSize(5l);
 
 
-        Mockito.when(daoClient.getMemosForPage(Matchers.anyInt(), Matchers.anyInt()))
+        Mockito.when(daoClient.getMemosForPage(Matchers.anyInt(), Matchers.anyInt(),
+                Matchers.anyBoolean(), Matchers.any(MemoFilter.class)))
                 .thenReturn(page);
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8"))
@@ -293,10 +541,11 @@ public class MemoControllerTest {
 
         page.setPrevPageNumber(1);
         page.setNextPageNumber(3);
-        Mockito.when(daoClient.getMemosForPage(Matchers.anyInt(), Matchers.anyInt()))
+        Mockito.when(daoClient.getMemosForPage(Matchers.anyInt(), Matchers.anyInt(),
+                Matchers.anyBoolean(), Matchers.any(MemoFilter.class)))
                 .thenReturn(page);
 
-        mvc.perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=2&limit=2")
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?page=2&limit=2")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8"))
@@ -305,6 +554,428 @@ public class MemoControllerTest {
                 .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=3&limit=2\"")))
 
         ;
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO
+                + "?page=2&limit=2&includeTotal=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"totalRecords\":5")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=3&limit=2&includeTotal=true\"")));
+        Mockito.verify(daoClient).getMemosForPage(2, 2, true, new MemoFilter());
+    }
+
+    /**
+     * Gets memos filtered and sorted, the filters are kept in the page links.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemosFiltered() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(1L);
+        memo1.setText("text1");
+        memo1.setAuthor("Jane Doe");
+        memo1.setTitle("title1");
+
+        MemoPage page = new MemoPage();
+        page.setMemoList(newArrayList(memo1));
+        page.setNextPageNumber(1);
+
+        MemoFilter filter = new MemoFilter();
+        filter.setAuthor("Jane Doe");
+        filter.setCreatedFrom(new Date(1441065600000L));
+        filter.setUpdatedSince(new Date(1441101600000L));
+        filter.setSort("-created");
+        Mockito.when(daoClient.getMemosForPage(0, 1, false, filter)).thenReturn(page);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
+                .param("limit", "1")
+                .param("author", "Jane Doe")
+                .param("createdFrom", "2015-09-01")
+                .param("updatedSince", "2015-09-01T10:00:00Z")
+                .param("sort", "-created")
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"author\":\"Jane Doe\"")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=1&limit=1"
+                        + "&author=Jane+Doe&createdFrom=2015-09-01T00%3A00%3A00Z"
+                        + "&updatedSince=2015-09-01T10%3A00%3A00Z&sort=-created\"")));
+    }
+
+    /**
+     * Gets memos restricted to the requested fields, the id always listed.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemosProjected() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(1L);
+        memo1.setVersion(0L);
+        memo1.setTitle("title1");
+
+        MemoPage page = new MemoPage();
+        page.setMemoList(newArrayList(memo1));
+        page.setNextPageNumber(1);
+
+        MemoFilter filter = new MemoFilter();
+        filter.setFields(newLinkedHashSet(Arrays.asList("title", "version")));
+        Mockito.when(daoClient.getMemosForPage(0, 1, false, filter)).thenReturn(page);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO)
+                .param("limit", "1")
+                .param("fields", "title, version")
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "\"result\":[{\"id\":1,\"title\":\"title1\",\"version\":0}]")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?page=1&limit=1"
+                        + "&fields=title%2Cversion\"")));
+    }
+
+    /**
+     * Exports the memos gzip encoded, a small created memo is sent as it is.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testExportMemosCompressed() throws Exception {
+        List<Memo> memos = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            Memo memo = new Memo();
+            memo.setId(i);
+            memo.setTitle("title" + i);
+            memo.setAuthor("author");
+            memo.setText("Some text that repeats itself, some text that repeats itself.");
+            memos.add(memo);
+        }
+        Mockito.doAnswer(invocation -> {
+            memos.forEach(consumerCaptor.getValue());
+            return null;
+        }).when(daoClient).streamMemos(consumerCaptor.capture());
+        Mockito.when(daoClient.createMemo(Matchers.any(Memo.class)))
+                .thenReturn(memos.get(0));
+
+        MockMvc compressing = MockMvcBuilders.standaloneSetup(memoController)
+                .addFilters(compressionFilter).build();
+        MvcResult result = AsyncMvc.perform(compressing, get(MemoController.V1_PREFIX
+                + MemoController.MEMO + MemoController.EXPORT)
+                .header("Accept-Encoding", "deflate;q=0.5, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn();
+        byte[] body = result.getResponse().getContentAsByteArray();
+        String ndjson = new String(ByteStreams.toByteArray(
+                new GZIPInputStream(new ByteArrayInputStream(body))),
+                StandardCharsets.UTF_8);
+        Assert.assertTrue(ndjson.contains("\"title\":\"title50\""));
+        Assert.assertTrue(body.length < ndjson.length() / 4);
+
+        AsyncMvc.perform(compressing, post(MemoController.V1_PREFIX + MemoController.MEMO)
+                .header("Accept-Encoding", "gzip")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"title\":\"title1\",\"author\":\"author\",\"text\":\"text\"}")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andExpect(content().string(containsString("\"title\":\"title1\"")));
+    }
+
+    /**
+     * Gets a memo while the database executor is saturated, the read is refused
+     * with 503 instead of waiting on the servlet thread.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemoSaturated() throws Exception {
+        ReflectionTestUtils.setField(memoController, "dbExecutor", (TaskExecutor) task -> {
+            throw new TaskRejectedException("Queue full");
+        });
+
+        try {
+            perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                    .accept(MediaType.APPLICATION_JSON));
+            Assert.fail("Read accepted by a saturated executor");
+        } catch (NestedServletException ex) {
+            Assert.assertTrue(ex.getCause() instanceof ServiceUnavailableException);
+        }
+        Mockito.verify(daoClient, Mockito.never()).getMemo(Matchers.anyLong());
+    }
+
+    /**
+     * Gets memos by id, from the query string and from a JSON array, in request
+     * order with the missing memo reported in its place.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemosById() throws Exception {
+        Memo memo = new Memo();
+        memo.setId(3L);
+        memo.setTitle("title");
+        MemoGetItem found = new MemoGetItem();
+        found.setId(3L);
+        found.setMemo(memo);
+        MemoGetItem missing = new MemoGetItem();
+        missing.setId(1L);
+        ErrorResponse error = new ErrorResponse();
+        error.setCode("404");
+        missing.setError(error);
+
+        Mockito.when(daoClient.getMemos(Matchers.anyListOf(Long.class)))
+                .thenReturn(newArrayList(found, missing));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.MGET)
+                .param("ids", "3, 1")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":[{\"id\":3,\"memo\":" +
+                        "{\"id\":3,\"title\":\"title\"},\"error\":null}," +
+                        "{\"id\":1,\"memo\":null,\"error\":{\"code\":\"404\"}}]}"));
+
+        perform(post(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.MGET)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content("[3,1]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"code\":\"404\"")));
+
+        Mockito.verify(daoClient, Mockito.times(2)).getMemos(idsCaptor.capture());
+        Assert.assertEquals(Arrays.asList(3L, 1L), idsCaptor.getAllValues().get(0));
+        Assert.assertEquals(Arrays.asList(3L, 1L), idsCaptor.getAllValues().get(1));
+
+        try {
+            perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.MGET)
+                    .param("ids", "3,x")
+                    .accept(MediaType.APPLICATION_JSON));
+            Assert.fail("Multi-get accepted an id that is not a number");
+        } catch (NestedServletException ex) {
+            Assert.assertTrue(ex.getCause() instanceof InvalidArgumentException);
+        }
+    }
+
+    /**
+     * Gets the changes of a first sync, the next link carries the last change.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetChanges() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(3L);
+        memo1.setText("text3");
+        memo1.setAuthor("author3");
+        memo1.setTitle("title3");
+        MemoChange change1 = new MemoChange();
+        change1.setId(3L);
+        change1.setMemo(memo1);
+        change1.setChangeSeq(7L);
+        MemoChange change2 = new MemoChange();
+        change2.setId(5L);
+        change2.setDeleted(true);
+        change2.setChangeSeq(9L);
+
+        Mockito.when(daoClient.getChanges(0L, 0L, 100, false))
+                .thenReturn(newArrayList(change1, change2));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO
+                + MemoController.CHANGES)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("{\"id\":3,\"deleted\":false,\"memo\":{\"id\":3,")))
+                .andExpect(content().string(containsString("{\"id\":5,\"deleted\":true,\"memo\":null}")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo/_changes?since="
+                        + new MemoChangeToken(9L, 5L).encode() + "&limit=100\"")));
+
+        Mockito.when(daoClient.getChanges(9L, 5L, 100, true))
+                .thenReturn(new ArrayList<>());
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO
+                + MemoController.CHANGES + "?since=" + new MemoChangeToken(9L, 5L).encode())
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"result\":[]")))
+                .andExpect(content().string(containsString("since="
+                        + new MemoChangeToken(9L, 5L).encode())));
+    }
+
+    /**
+     * Gets the memo statistics.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetStats() throws Exception {
+        MemoStats stats = new MemoStats();
+        stats.setTotal(3L);
+        stats.setAuthors(ImmutableMap.of("author1", 2L, "author2", 1L));
+        stats.setTextSizes(ImmutableMap.of("0-99", 3L, "100-999", 0L));
+        stats.setCreateRate(0.5);
+
+        Mockito.when(daoClient.getStats()).thenReturn(stats);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + MemoController.STATS)
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":{\"total\":3,"
+                        + "\"authors\":{\"author1\":2,\"author2\":1},"
+                        + "\"textSizes\":{\"0-99\":3,\"100-999\":0},\"createRate\":0.5}}"));
+    }
+
+    /**
+     * Gets memos by keyset cursor.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemosAfterCursor() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(11L);
+        memo1.setText("text11");
+        memo1.setAuthor("author11");
+        memo1.setTitle("title11");
+
+        MemoPage page = new MemoPage();
+        page.setMemoList(newArrayList(memo1));
+        page.setNextAfterId(11L);
+
+        Mockito.when(daoClient.getMemosAfter(10L, 1, new MemoFilter())).thenReturn(page);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO + "?after="
+                + MemoCursor.encode(10L) + "&limit=1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"id\":11")))
+                .andExpect(content().string(containsString("\"totalRecords\":null")))
+                .andExpect(content().string(containsString("\"prev\":null")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo?after="
+                        + MemoCursor.encode(11L) + "&limit=1\"")));
+    }
+
+    /**
+     * Searches memos, the query is kept in the page links.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testSearchMemos() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(12L);
+        memo1.setText("text12");
+        memo1.setAuthor("author12");
+        memo1.setTitle("harbour notes");
+
+        MemoPage page = new MemoPage();
+        page.setMemoList(newArrayList(memo1));
+        page.setPrevPageNumber(0);
+        page.setNextPageNumber(2);
+
+        Mockito.when(daoClient.searchMemos("harbour notes", 1, 1)).thenReturn(page);
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO
+                + MemoController.SEARCH + "?q=harbour notes&page=1&limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("\"id\":12")))
+                .andExpect(content().string(containsString("\"totalRecords\":null")))
+                .andExpect(content().string(containsString("\"prev\":\"http://localhost/data/1/memo/_search?q=harbour+notes&page=0&limit=1\"")))
+                .andExpect(content().string(containsString("\"next\":\"http://localhost/data/1/memo/_search?q=harbour+notes&page=2&limit=1\"")));
+    }
+
+    /**
+     * Gets memos test, an unchanged page is not sent again.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testGetMemosNotModified() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(11L);
+        memo1.setVersion(0L);
+        memo1.setText("text11");
+        memo1.setAuthor("author11");
+        memo1.setTitle("title11");
+
+        MemoPage page = new MemoPage();
+        page.setMemoList(newArrayList(memo1));
+
+        Mockito.when(daoClient.getMemosAfter(10L, 1, new MemoFilter())).thenReturn(page);
+
+        String uri = MemoController.V1_PREFIX + MemoController.MEMO + "?after="
+                + MemoCursor.encode(10L) + "&limit=1";
+        String etag = perform(get(uri).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        perform(get(uri).accept(MediaType.APPLICATION_JSON)
+                .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        memo1.setVersion(1L);
+        perform(get(uri).accept(MediaType.APPLICATION_JSON)
+                .header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Exports memos test, NDJSON and CSV.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testExportMemos() throws Exception {
+        Memo memo1 = new Memo();
+        memo1.setId(1L);
+        memo1.setVersion(0L);
+        memo1.setText("text1");
+        memo1.setAuthor("author1");
+        memo1.setTitle("title1");
+        memo1.setCreated(new Date(1442033000000L));
+
+        Memo memo2 = new Memo();
+        memo2.setId(2L);
+        memo2.setVersion(1L);
+        memo2.setText("line 1\nline \"2\", end");
+        memo2.setAuthor("author2");
+        memo2.setTitle("title2");
+
+        Mockito.doAnswer(invocation -> {
+            consumerCaptor.getValue().accept(memo1);
+            consumerCaptor.getValue().accept(memo2);
+            return null;
+        }).when(daoClient).streamMemos(consumerCaptor.capture());
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO
+                + MemoController.EXPORT))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+                .andExpect(content().string(
+                        "{\"id\":1,\"title\":\"title1\",\"author\":\"author1\","
+                        + "\"text\":\"text1\",\"created\":1442033000000,"
+                        + "\"updated\":null,\"version\":0}\n"
+                        + "{\"id\":2,\"title\":\"title2\",\"author\":\"author2\","
+                        + "\"text\":\"line 1\\nline \\\"2\\\", end\",\"created\":null,"
+                        + "\"updated\":null,\"version\":1}\n"));
+
+        perform(get(MemoController.V1_PREFIX + MemoController.MEMO
+                + MemoController.EXPORT + "?format=csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("text/csv;charset=UTF-8"))
+                .andExpect(content().string(
+                        "id,title,author,text,created,updated,version\r\n"
+                        + "1,title1,author1,text1,2015-09-12T04:43:20Z,,0\r\n"
+                        + "2,title2,author2,\"line 1\nline \"\"2\"\", end\",,,1\r\n"));
     }
 
     /**
@@ -317,7 +988,7 @@ public class MemoControllerTest {
 
         Mockito.when(daoClient.updateMemo(Matchers.any(Memo.class))).thenReturn(true);
 
-        mvc.perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -337,7 +1008,7 @@ public class MemoControllerTest {
 
         Mockito.when(daoClient.updateMemo(Matchers.any(Memo.class))).thenReturn(true);
 
-        mvc.perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(put(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON)
                 .characterEncoding("UTF-8")
@@ -347,6 +1018,27 @@ public class MemoControllerTest {
     }
 
 
+    /**
+     * Patches memo test.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testPatchMemoByValidIdHappy() throws Exception {
+
+        perform(patch(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+                .contentType(MemoController.MERGE_PATCH_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .characterEncoding("UTF-8")
+                .content("{\"title\":\"patched title\"}"))
+                .andExpect(status().isNoContent());
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("title", "patched title");
+        Mockito.verify(daoClient).patchMemo(1L, fields);
+    }
+
+
     /**
      * Deletes memo test.
      *
@@ -357,11 +1049,47 @@ public class MemoControllerTest {
 
         Mockito.when(daoClient.updateMemo(Matchers.any(Memo.class))).thenReturn(true);
 
-        mvc.perform(delete(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
+        perform(delete(MemoController.V1_PREFIX + MemoController.MEMO + "/1")
                 .contentType(MediaType.APPLICATION_JSON)
                 .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isNoContent());
     }
 
+    /**
+     * Delete memos by ids and by author, the count is reported; a request with
+     * neither is refused.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testDeleteMemos() throws Exception {
+        Mockito.when(daoClient.deleteMemos(Matchers.anyListOf(Long.class))).thenReturn(2);
+        Mockito.when(daoClient.deleteMemos(Matchers.any(MemoFilter.class))).thenReturn(5);
+
+        perform(delete(MemoController.V1_PREFIX + MemoController.MEMO)
+                .param("ids", "1,2,3")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":2}"));
+        Mockito.verify(daoClient).deleteMemos(Arrays.asList(1L, 2L, 3L));
 
+        perform(delete(MemoController.V1_PREFIX + MemoController.MEMO)
+                .param("author", "an author")
+                .param("createdTo", "2015-09-01")
+                .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\":5}"));
+        ArgumentCaptor<MemoFilter> filter = ArgumentCaptor.forClass(MemoFilter.class);
+        Mockito.verify(daoClient).deleteMemos(filter.capture());
+        Assert.assertEquals("an author", filter.getValue().getAuthor());
+        Assert.assertNotNull(filter.getValue().getCreatedTo());
+
+        try {
+            perform(delete(MemoController.V1_PREFIX + MemoController.MEMO)
+                    .accept(MediaType.APPLICATION_JSON));
+            Assert.fail("Delete accepted without ids or filter");
+        } catch (NestedServletException ex) {
+            Assert.assertTrue(ex.getCause() instanceof InvalidArgumentException);
+        }
+    }
 }
@@ -2,32 +2,84 @@ package com.example.impl.client;
 
 import com.example.MemoBootApplication;
 import com.example.api.client.DAOClient;
+import com.example.exception.ConflictException;
 import com.example.exception.DataNotFoundException;
 import com.example.exception.InvalidDataException;
+import com.example.exception.ServiceUnavailableException;
+import com.example.metrics.LatencyRegistry;
+import com.example.metrics.MeteredDataSource;
+import com.example.model.LatencySnapshot;
 import com.example.model.Memo;
+import com.example.model.MemoBulkItem;
+import com.example.model.MemoChange;
+import com.example.model.MemoFilter;
+import com.example.model.MemoGetItem;
 import com.example.model.MemoPage;
+import com.example.model.MemoStats;
+import com.example.model.MemoVersion;
+import com.example.repo.MemoRepository;
+import com.example.routing.ReadYourWrites;
+import com.example.routing.ReplicaRoutingDataSource;
+import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Mockito;
+import org.springframework.aop.framework.Advised;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.Metric;
 import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.Cookie;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import static com.google.common.collect.Sets.newLinkedHashSet;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Tests for DAOClientImpl.
@@ -54,6 +106,66 @@ public class DAOClientTest {
      */
     @Autowired
     private DAOClient daoClient;
+    /**
+     * The Memo cache.
+     */
+    @Autowired
+    private MemoCache memoCache;
+    /**
+     * The Memo counter.
+     */
+    @Autowired
+    private MemoCounter memoCounter;
+    /**
+     * The Latency registry.
+     */
+    @Autowired
+    private LatencyRegistry latencyRegistry;
+    /**
+     * The pooled data source.
+     */
+    @Autowired
+    private MeteredDataSource dataSource;
+    /**
+     * The transaction manager.
+     */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    /**
+     * The entity manager factory.
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    /**
+     * The change sequence.
+     */
+    @Autowired
+    private MemoChangeSequence changeSequence;
+    /**
+     * The single flight of the reads.
+     */
+    @Autowired
+    private SingleFlight singleFlight;
+    /**
+     * The memo statistics.
+     */
+    @Autowired
+    private MemoStatistics memoStatistics;
+    /**
+     * The routing of the reads to the replicas.
+     */
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+    /**
+     * The read-your-writes window.
+     */
+    @Autowired
+    private ReadYourWrites readYourWrites;
+    /**
+     * The threads of the database executor.
+     */
+    @Value("${memo.async.pool-size:20}")
+    private int readerCount;
 
     /**
      * Create new memo test.
@@ -90,6 +202,242 @@ public class DAOClientTest {
     }
 
 
+    /**
+     * A version sent with a create is ignored: the memo is inserted at version 0,
+     * alone or in bulk, and not merged.
+     */
+    @Test
+    public void createMemoIgnoresVersionTest() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        memo.setVersion(5L);
+        Memo created = daoClient.createMemo(memo);
+        assertEquals(Long.valueOf(0L), daoClient.getMemo(created.getId()).getVersion());
+
+        Memo bulk = new Memo();
+        bulk.setTitle("Some title");
+        bulk.setAuthor("Some author");
+        bulk.setText("Some text");
+        bulk.setVersion(5L);
+        Long id = daoClient.createMemos(Collections.singletonList(bulk)).get(0).getId();
+        assertEquals(Long.valueOf(0L), daoClient.getMemo(id).getVersion());
+        assertTrue(daoClient.getCount() == 2);
+    }
+
+
+    /**
+     * Create memos in bulk, the invalid one is reported without failing the others.
+     */
+    @Test
+    public void createMemosTest() {
+        List<Memo> memos = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author " + i);
+            if (i != 7) {
+                memo.setText("Some text " + i);
+            }
+            memos.add(memo);
+        }
+
+        List<MemoBulkItem> items = daoClient.createMemos(memos);
+        assertEquals(120, items.size());
+        assertNull(items.get(7).getId());
+        assertEquals("400", items.get(7).getError().getCode());
+        assertTrue(items.get(7).getError().getDetail().contains("Memo Text cannot be null"));
+        assertNotNull(items.get(119).getId());
+        assertNull(items.get(119).getError());
+        assertEquals(Integer.valueOf(119), items.get(119).getIndex());
+        assertTrue(daoClient.getCount() == 119);
+        assertEquals("Some text 119", daoClient.getMemo(items.get(119).getId()).getText());
+    }
+
+
+    /**
+     * The ids of the memos are allocated from the sequence in blocks of the pooled
+     * allocation size, and a bulk create sends its inserts as JDBC batches. 1000
+     * memos created one by one take 1000 inserts and 21 sequence fetches, the
+     * first block being fetched twice by the pooled optimizer; created in bulk they
+     * take 20 batches of inserts and 20 sequence fetches.
+     */
+    @Test
+    public void createMemosStatementsTest() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class)
+                .getStatistics();
+        statistics.setStatisticsEnabled(true);
+        int allocation = Integer.parseInt(Memo.ID_ALLOCATION_SIZE);
+        try {
+            long sequence = sequenceValue();
+            statistics.clear();
+            for (int i = 0; i < 1000; i++) {
+                Memo memo = new Memo();
+                memo.setTitle("Some title " + i);
+                memo.setAuthor("Some author");
+                memo.setText("Some text " + i);
+                daoClient.createMemo(memo);
+            }
+            assertEquals(1021L, statistics.getPrepareStatementCount());
+            assertEquals(21L, (sequenceValue() - sequence) / allocation);
+            sequence = sequenceValue();
+            List<Memo> memos = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                Memo memo = new Memo();
+                memo.setTitle("Some title " + i);
+                memo.setAuthor("Some author");
+                memo.setText("Some text " + i);
+                memos.add(memo);
+            }
+            statistics.clear();
+            daoClient.createMemos(memos);
+            assertEquals(40L, statistics.getPrepareStatementCount());
+            assertEquals(20L, (sequenceValue() - sequence) / allocation);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    /**
+     * Gets the current value of the sequence of the memo ids.
+     *
+     * @return the value
+     */
+    private long sequenceValue() {
+        return jdbcTemplate.queryForObject("SELECT CURRENT_VALUE FROM"
+                + " INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'MEMOS_ID_SEQ'",
+                Long.class);
+    }
+
+
+    /**
+     * A load that overlaps an update does not put the row it read before the
+     * update back into the cache.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void loadOverlappingUpdateNotCachedTest() throws Exception {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Long id = daoClient.createMemo(memo).getId();
+
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        blockFirstLoad(loaded, written);
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        Future<Memo> read = reader.submit(() -> daoClient.getMemo(id));
+        loaded.await();
+
+        Memo update = new Memo();
+        update.setId(id);
+        update.setTitle("New title");
+        update.setAuthor("Some author");
+        update.setText("Some text");
+        daoClient.updateMemo(update);
+        written.countDown();
+
+        assertEquals("Some title", read.get().getTitle());
+        reader.shutdown();
+        assertNull(memoCache.get(id));
+        assertEquals("New title", daoClient.getMemo(id).getTitle());
+        assertNotNull(memoCache.get(id));
+    }
+
+    /**
+     * A read arriving after a write does not join the load in flight before it, and
+     * the value of that load, once it completes, is not cached.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void writeWhileLeaderBlockedTest() throws Exception {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Long id = daoClient.createMemo(memo).getId();
+
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        blockFirstLoad(loaded, written);
+        ExecutorService leader = Executors.newSingleThreadExecutor();
+        Future<Memo> read = leader.submit(() -> daoClient.getMemo(id));
+        loaded.await();
+
+        Memo update = new Memo();
+        update.setId(id);
+        update.setTitle("New title");
+        update.setAuthor("Some author");
+        update.setText("Some text");
+        daoClient.updateMemo(update);
+
+        assertEquals("New title", daoClient.getMemo(id).getTitle());
+        written.countDown();
+        assertEquals("Some title", read.get().getTitle());
+        leader.shutdown();
+        assertEquals("New title", memoCache.get(id).getTitle());
+        assertEquals("New title", daoClient.getMemo(id).getTitle());
+    }
+
+    /**
+     * Make the first memo load of the DAO client wait, once it has read the row,
+     * until the test has written.
+     *
+     * @param loaded  counted down when the row is read
+     * @param written awaited before the load returns
+     * @throws Exception the exception
+     */
+    private void blockFirstLoad(final CountDownLatch loaded, final CountDownLatch written)
+            throws Exception {
+        Object target = ((Advised) daoClient).getTargetSource().getTarget();
+        MemoRepository repository =
+                (MemoRepository) ReflectionTestUtils.getField(target, "memoRepository");
+        MemoRepository blocking = Mockito.mock(MemoRepository.class,
+                AdditionalAnswers.delegatesTo(repository));
+        AtomicBoolean first = new AtomicBoolean(true);
+        Mockito.doAnswer(invocation -> {
+            Memo row = repository.findOne((Long) invocation.getArguments()[0]);
+            if (first.getAndSet(false)) {
+                loaded.countDown();
+                written.await();
+            }
+            return row;
+        }).when(blocking).findOne(Mockito.anyLong());
+        ReflectionTestUtils.setField(target, "memoRepository", blocking);
+    }
+
+    /**
+     * Memos of a bulk create that is rolled back are neither searchable nor
+     * counted.
+     */
+    @Test
+    public void createMemosRolledBackTest() {
+        memoCounter.get();
+        List<Memo> memos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Rolled back title " + i);
+            memo.setAuthor("Some author");
+            memo.setText("Some text");
+            memos.add(memo);
+        }
+
+        new TransactionTemplate(transactionManager).execute(status -> {
+            daoClient.createMemos(memos);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(0, memoCounter.get());
+        assertEquals(Integer.valueOf(0), daoClient.getCount());
+        exception.expect(DataNotFoundException.class);
+        daoClient.searchMemos("rolled", 0, 10);
+    }
+
     /**
      * Delete memo test valid.
      */
@@ -117,6 +465,153 @@ public class DAOClientTest {
         daoClient.deleteMemo(1L);
     }
 
+    /**
+     * Delete memos by ids, the missing id and the memo already deleted are not
+     * counted, in the statistics either, and the deleted memos are tombstones of
+     * the change feed.
+     */
+    @Test
+    public void deleteMemosTest() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author");
+            memo.setText("Some text");
+            ids.add(daoClient.createMemo(memo).getId());
+        }
+        daoClient.getMemo(ids.get(0));
+        daoClient.deleteMemo(ids.get(2));
+
+        assertEquals(2, daoClient.deleteMemos(Arrays.asList(ids.get(0), ids.get(1),
+                ids.get(2), 999L)));
+
+        assertEquals(Integer.valueOf(0), daoClient.getCount());
+        assertFalse(daoClient.existsMemo(ids.get(0)));
+        assertEquals(3L, ((AtomicLong) ReflectionTestUtils.getField(memoStatistics,
+                "deletes")).get());
+        List<MemoChange> changes = daoClient.getChanges(0, 0, 10, true);
+        assertEquals(3, changes.size());
+        for (MemoChange change : changes) {
+            assertTrue(change.isDeleted());
+        }
+    }
+
+    /**
+     * Delete memos by author, the memos of other authors are kept; a filter
+     * matching every memo is refused.
+     */
+    @Test
+    public void deleteMemosByFilterTest() {
+        for (int i = 0; i < 5; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Author " + (i % 2));
+            memo.setText("Some text");
+            daoClient.createMemo(memo);
+        }
+        MemoFilter filter = new MemoFilter();
+        filter.setAuthor("Author 0");
+
+        assertEquals(3, daoClient.deleteMemos(filter));
+        assertEquals(0, daoClient.deleteMemos(filter));
+        assertEquals(Integer.valueOf(2), daoClient.getCount());
+
+        exception.expect(InvalidDataException.class);
+        daoClient.deleteMemos(new MemoFilter());
+    }
+
+    /**
+     * Deleted memos are gone from the reads but listed by the change feed, after
+     * the memos written before them.
+     */
+    @Test
+    public void getChangesTest() {
+        List<Memo> memos = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author");
+            memo.setText("Some text");
+            memos.add(daoClient.createMemo(memo));
+        }
+        Long updatedId = memos.get(0).getId();
+        Long deletedId = memos.get(1).getId();
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("title", "New title");
+        daoClient.patchMemo(updatedId, fields);
+        daoClient.deleteMemo(deletedId);
+
+        assertFalse(daoClient.existsMemo(deletedId));
+        assertEquals(Integer.valueOf(2), daoClient.getCount());
+
+        List<MemoChange> changes = daoClient.getChanges(0L, 0L, 10, true);
+        assertEquals(3, changes.size());
+        assertEquals(memos.get(2).getId(), changes.get(0).getId());
+        assertEquals(updatedId, changes.get(1).getId());
+        assertEquals("New title", changes.get(1).getMemo().getTitle());
+        assertEquals(deletedId, changes.get(2).getId());
+        assertTrue(changes.get(2).isDeleted());
+        assertNull(changes.get(2).getMemo());
+
+        MemoChange first = changes.get(0);
+        changes = daoClient.getChanges(first.getChangeSeq(), first.getId(), 1, true);
+        assertEquals(1, changes.size());
+        assertEquals(updatedId, changes.get(0).getId());
+
+        assertEquals(2, daoClient.getChanges(0L, 0L, 10, false).size());
+        MemoChange last = daoClient.getChanges(0L, 0L, 10, true).get(2);
+        assertTrue(daoClient.getChanges(last.getChangeSeq(), last.getId(), 10, true)
+                .isEmpty());
+
+        exception.expect(DataNotFoundException.class);
+        daoClient.getMemo(deletedId);
+    }
+
+    /**
+     * The change feed stops below a write still in flight, so a later write that
+     * commits first is not served ahead of it.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void getChangesBelowWriteInFlightTest() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        Future<?> slow = writer.submit(() ->
+                new TransactionTemplate(transactionManager).execute(status -> {
+                    Memo memo = new Memo();
+                    memo.setTitle("Slow title");
+                    memo.setAuthor("Some author");
+                    memo.setText("Some text");
+                    daoClient.createMemos(Arrays.asList(memo));
+                    written.countDown();
+                    try {
+                        commit.await();
+                    } catch (InterruptedException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                    return null;
+                }));
+        written.await();
+
+        Memo memo = new Memo();
+        memo.setTitle("Fast title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Long fastId = daoClient.createMemo(memo).getId();
+        assertTrue(daoClient.getChanges(0L, 0L, 10, true).isEmpty());
+
+        commit.countDown();
+        slow.get();
+        writer.shutdown();
+        List<MemoChange> changes = daoClient.getChanges(0L, 0L, 10, true);
+        assertEquals(2, changes.size());
+        assertEquals("Slow title", changes.get(0).getMemo().getTitle());
+        assertEquals(fastId, changes.get(1).getId());
+    }
+
     /**
      * Gets memo test valid.
      */
@@ -133,6 +628,103 @@ public class DAOClientTest {
         assertTrue("Id not matching", memo.getId() == 1L);
     }
 
+    /**
+     * Gets memos by id in request order, duplicates included, the cached one from
+     * the cache and the missing one reported instead of failing the request.
+     */
+    @Test
+    public void getMemosTest() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author");
+            memo.setText("Some text");
+            ids.add(daoClient.createMemo(memo).getId());
+        }
+        daoClient.getMemo(ids.get(1));
+        long hits = memoCache.stats().hitCount();
+
+        List<MemoGetItem> items = daoClient.getMemos(
+                Arrays.asList(ids.get(2), 999L, ids.get(1), ids.get(0), ids.get(2)));
+
+        assertEquals(5, items.size());
+        assertEquals("Some title 2", items.get(0).getMemo().getTitle());
+        assertNull(items.get(1).getMemo());
+        assertEquals(Long.valueOf(999L), items.get(1).getId());
+        assertEquals("404", items.get(1).getError().getCode());
+        assertEquals("Some title 1", items.get(2).getMemo().getTitle());
+        assertEquals("Some title 0", items.get(3).getMemo().getTitle());
+        assertEquals(ids.get(2), items.get(4).getMemo().getId());
+        assertNull(items.get(0).getError());
+        assertEquals(hits + 1, memoCache.stats().hitCount());
+        assertNotNull(memoCache.get(ids.get(0)));
+    }
+
+    /**
+     * Gets memo twice, the second read is served by the cache until an update.
+     */
+    @Test
+    public void getMemoTestCached() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+
+        long hits = memoCache.stats().hitCount();
+        long misses = memoCache.stats().missCount();
+
+        daoClient.getMemo(createdMemo.getId());
+        daoClient.getMemo(createdMemo.getId());
+        assertEquals(misses + 1, memoCache.stats().missCount());
+        assertEquals(hits + 1, memoCache.stats().hitCount());
+
+        Memo update = new Memo();
+        update.setId(createdMemo.getId());
+        update.setTitle("Updated title");
+        update.setAuthor("Some author");
+        update.setText("Some text");
+        daoClient.updateMemo(update);
+
+        assertEquals("Updated title", daoClient.getMemo(createdMemo.getId()).getTitle());
+        assertEquals(misses + 2, memoCache.stats().missCount());
+    }
+
+    /**
+     * Gets memo version test, it follows the updates of the memo.
+     */
+    @Test
+    public void getMemoVersionTest() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+
+        MemoVersion version = daoClient.getMemoVersion(createdMemo.getId());
+        assertEquals(createdMemo.getId(), version.getId());
+        assertEquals(Long.valueOf(0L), version.getVersion());
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("title", "Patched title");
+        daoClient.patchMemo(createdMemo.getId(), fields);
+
+        version = daoClient.getMemoVersion(createdMemo.getId());
+        assertEquals(Long.valueOf(1L), version.getVersion());
+        assertNotNull(version.getUpdated());
+        assertEquals(version, daoClient.getMemoVersion(createdMemo.getId()));
+    }
+
+    /**
+     * Gets memo version test invalid.
+     */
+    @Test
+    public void getMemoVersionTestInvalid() {
+        exception.expect(DataNotFoundException.class);
+        daoClient.getMemoVersion(10L);
+    }
+
     /**
      * Gets memo test invalid.
      */
@@ -142,6 +734,19 @@ public class DAOClientTest {
         Memo memo = daoClient.getMemo(10L);
     }
 
+    /**
+     * Gets memo test invalid, the miss is signalled without a stack trace.
+     */
+    @Test
+    public void getMemoTestInvalidStackless() {
+        try {
+            daoClient.getMemo(10L);
+            fail("Missing memo found");
+        } catch (DataNotFoundException ex) {
+            assertEquals(0, ex.getStackTrace().length);
+        }
+    }
+
     /**
      * Exists memo test valid.
      */
@@ -184,6 +789,29 @@ public class DAOClientTest {
         assertEquals(10, list.size());
     }
 
+    /**
+     * Stream memos test, all memos in id order.
+     */
+    @Test
+    public void streamMemosTest() {
+        for (int i = 0; i < 25; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author " + i);
+            memo.setText("Some text " + i);
+            daoClient.createMemo(memo);
+        }
+
+        List<Memo> memos = new ArrayList<>();
+        daoClient.streamMemos(memos::add);
+
+        assertEquals(25, memos.size());
+        for (int i = 0; i < 25; i++) {
+            assertEquals("Some title " + i, memos.get(i).getTitle());
+            assertEquals(Long.valueOf(0L), memos.get(i).getVersion());
+        }
+    }
+
     /**
      * Gets all memos test not valid.
      */
@@ -207,6 +835,30 @@ public class DAOClientTest {
     }
 
 
+    /**
+     * Gets memos for page without the totals.
+     */
+    @Test
+    public void getMemosForPageWithoutTotal() {
+
+        for (int i = 0; i < 20; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author " + i);
+            memo.setText("Some text " + i);
+            daoClient.createMemo(memo);
+        }
+
+        MemoPage page = daoClient.getMemosForPage(1, 10, false);
+        assertNotNull(page);
+        assertEquals(10, page.getMemoList().size());
+        assertNull(page.getNextPageNumber());
+        assertTrue(0 == page.getPrevPageNumber());
+        assertNull(page.getTotalPages());
+        assertNull(page.getTotalMemosSize());
+    }
+
+
     /**
      * Gets memo test invalid.
      */
@@ -215,4 +867,816 @@ public class DAOClientTest {
         exception.expect(DataNotFoundException.class);
         daoClient.getMemosForPage(10, 10);
     }
+
+    /**
+     * Gets memos filtered by author and times, in the requested order.
+     */
+    @Test
+    public void getMemosForPageFiltered() {
+        for (int i = 1; i <= 9; i++) {
+            jdbcTemplate.update("INSERT INTO MEMOS (ID, TITLE, AUTHOR, TEXT, CREATED,"
+                    + " UPDATED, VERSION, ACTIVE) VALUES (?, ?, ?, 'Some text', ?, ?, 0,"
+                    + " TRUE)", i,
+                    "Title " + i, "Author " + (i % 3), new Date(i * 1000L),
+                    new Date(i * 2000L));
+        }
+
+        MemoFilter filter = new MemoFilter();
+        filter.setAuthor("Author 1");
+        filter.setSort("-title");
+        MemoPage page = daoClient.getMemosForPage(0, 2, true, filter);
+        assertEquals(2, page.getMemoList().size());
+        assertEquals(Long.valueOf(7L), page.getMemoList().get(0).getId());
+        assertEquals(Long.valueOf(4L), page.getMemoList().get(1).getId());
+        assertEquals(Long.valueOf(3L), page.getTotalMemosSize());
+        assertEquals(Integer.valueOf(1), page.getNextPageNumber());
+
+        filter = new MemoFilter();
+        filter.setCreatedFrom(new Date(3000L));
+        filter.setCreatedTo(new Date(6000L));
+        filter.setSort("created");
+        page = daoClient.getMemosForPage(0, 10, false, filter);
+        assertEquals(3, page.getMemoList().size());
+        assertEquals(Long.valueOf(3L), page.getMemoList().get(0).getId());
+        assertEquals(Long.valueOf(5L), page.getMemoList().get(2).getId());
+
+        filter = new MemoFilter();
+        filter.setUpdatedSince(new Date(14000L));
+        page = daoClient.getMemosAfter(7L, 1, filter);
+        assertEquals(Long.valueOf(8L), page.getMemoList().get(0).getId());
+        assertEquals(Long.valueOf(8L), page.getNextAfterId());
+
+        filter.setSort("updated");
+        exception.expect(InvalidDataException.class);
+        daoClient.getMemosAfter(0L, 1, filter);
+    }
+
+    /**
+     * Gets memos restricted to some fields, the others are not read.
+     */
+    @Test
+    public void getMemosForPageProjected() {
+        for (int i = 0; i < 3; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author " + i);
+            memo.setText("Some text " + i);
+            daoClient.createMemo(memo);
+        }
+
+        MemoFilter filter = new MemoFilter();
+        filter.setFields(newLinkedHashSet(Arrays.asList("title", "updated")));
+        MemoPage page = daoClient.getMemosForPage(0, 2, false, filter);
+        assertEquals(2, page.getMemoList().size());
+        assertEquals(Integer.valueOf(1), page.getNextPageNumber());
+        Memo memo = page.getMemoList().get(0);
+        assertEquals(Long.valueOf(1L), memo.getId());
+        assertEquals("Some title 0", memo.getTitle());
+        assertNotNull(memo.getVersion());
+        assertNull(memo.getText());
+        assertNull(memo.getAuthor());
+
+        page = daoClient.getMemosAfter(2L, 2, filter);
+        assertEquals(Long.valueOf(3L), page.getMemoList().get(0).getId());
+        assertNull(page.getMemoList().get(0).getText());
+
+        filter.setFields(newLinkedHashSet(Arrays.asList("title", "active")));
+        exception.expect(InvalidDataException.class);
+        daoClient.getMemosForPage(0, 2, false, filter);
+    }
+
+    /**
+     * Gets memos after a given id walking all pages by keyset.
+     */
+    @Test
+    public void getMemosAfterValid() {
+
+        for (int i = 0; i < 15; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author " + i);
+            memo.setText("Some text " + i);
+            daoClient.createMemo(memo);
+        }
+
+        MemoPage page = daoClient.getMemosAfter(0L, 10);
+        assertNotNull(page);
+        assertEquals(10, page.getMemoList().size());
+        assertEquals(Long.valueOf(10L), page.getNextAfterId());
+        assertNull(page.getTotalMemosSize());
+
+        page = daoClient.getMemosAfter(page.getNextAfterId(), 10);
+        assertEquals(5, page.getMemoList().size());
+        assertEquals(Long.valueOf(11L), page.getMemoList().get(0).getId());
+        assertNull(page.getNextAfterId());
+    }
+
+    /**
+     * Gets memos after the last id.
+     */
+    @Test
+    public void getMemosAfterInValid() {
+        exception.expect(DataNotFoundException.class);
+        daoClient.getMemosAfter(100L, 10);
+    }
+
+    /**
+     * Search memos, ranked by where the words are found and following the writes.
+     */
+    @Test
+    public void searchMemosTest() {
+        jdbcTemplate.update("INSERT INTO MEMOS (ID, TITLE, AUTHOR, TEXT, VERSION, ACTIVE)"
+                + " VALUES (1000, 'Tide tables', 'Harbour office', 'Boats', 0, TRUE)");
+        for (int i = 0; i < 12; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Memo " + i);
+            memo.setAuthor("Some author");
+            memo.setText("Notes about the harbour, part " + i);
+            daoClient.createMemo(memo);
+        }
+
+        MemoPage page = daoClient.searchMemos("HARBOUR", 0, 10);
+        assertEquals(10, page.getMemoList().size());
+        assertEquals(Long.valueOf(1000L), page.getMemoList().get(0).getId());
+        assertEquals(Integer.valueOf(1), page.getNextPageNumber());
+        assertNull(page.getPrevPageNumber());
+        assertNull(page.getTotalMemosSize());
+
+        page = daoClient.searchMemos("harbour", 1, 10);
+        assertEquals(3, page.getMemoList().size());
+        assertEquals(Integer.valueOf(0), page.getPrevPageNumber());
+        assertNull(page.getNextPageNumber());
+
+        page = daoClient.searchMemos("harbour part 7", 0, 10);
+        assertEquals(1, page.getMemoList().size());
+        Memo memo = page.getMemoList().get(0);
+        assertEquals("Memo 7", memo.getTitle());
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("text", "Moved to the marina");
+        daoClient.patchMemo(memo.getId(), fields);
+        assertEquals(memo.getId(), daoClient.searchMemos("marina", 0, 10)
+                .getMemoList().get(0).getId());
+
+        daoClient.deleteMemo(memo.getId());
+        exception.expect(DataNotFoundException.class);
+        daoClient.searchMemos("marina", 0, 10);
+    }
+
+    /**
+     * A memo indexed while the search index is read from the table waits for the
+     * read and is indexed after it, even though the read missed it.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void searchIndexDuringLoadTest() throws Exception {
+        InMemoryMemoSearch search = new InMemoryMemoSearch(jdbcTemplate);
+        ReentrantReadWriteLock lock =
+                (ReentrantReadWriteLock) ReflectionTestUtils.getField(search, "lock");
+        Memo memo = new Memo();
+        memo.setId(2000L);
+        memo.setTitle("Quay");
+        memo.setAuthor("Harbour office");
+        memo.setText("Boats");
+
+        lock.writeLock().lock();
+        Thread writer = new Thread(() -> search.index(memo));
+        try {
+            writer.start();
+            for (int i = 0; i < 500 && !lock.hasQueuedThread(writer); i++) {
+                Thread.sleep(10L);
+            }
+            ReflectionTestUtils.setField(search, "loaded", true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        writer.join();
+
+        jdbcTemplate.update("INSERT INTO MEMOS (ID, TITLE, AUTHOR, TEXT, VERSION, ACTIVE)"
+                + " VALUES (2000, 'Quay', 'Harbour office', 'Boats', 0, TRUE)");
+        List<Memo> found = search.search("quay", 0, 10);
+        assertEquals(1, found.size());
+        assertEquals(Long.valueOf(2000L), found.get(0).getId());
+    }
+
+    /**
+     * Update memo test with the current version, the version is incremented.
+     */
+    @Test
+    public void updateMemoTestVersioned() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+        Long version = daoClient.getMemo(createdMemo.getId()).getVersion();
+
+        Memo update = new Memo();
+        update.setId(createdMemo.getId());
+        update.setVersion(version);
+        update.setTitle("Updated title");
+        update.setAuthor("Some author");
+        update.setText("Some text");
+        assertTrue(daoClient.updateMemo(update));
+
+        memo = daoClient.getMemo(createdMemo.getId());
+        assertEquals("Updated title", memo.getTitle());
+        assertEquals(Long.valueOf(version + 1), memo.getVersion());
+    }
+
+    /**
+     * Update memo test with an outdated version.
+     */
+    @Test
+    public void updateMemoTestWithStaleVersion() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+        Long version = daoClient.getMemo(createdMemo.getId()).getVersion();
+
+        Memo update = new Memo();
+        update.setId(createdMemo.getId());
+        update.setVersion(version);
+        update.setTitle("Updated title");
+        update.setAuthor("Some author");
+        update.setText("Some text");
+        daoClient.updateMemo(update);
+
+        exception.expect(ConflictException.class);
+        daoClient.updateMemo(update);
+    }
+
+    /**
+     * Update memo test with invalid id.
+     */
+    @Test
+    public void updateMemoTestWithInvalid() {
+        Memo update = new Memo();
+        update.setId(1L);
+        update.setVersion(0L);
+        update.setTitle("Updated title");
+        update.setAuthor("Some author");
+        update.setText("Some text");
+
+        exception.expect(DataNotFoundException.class);
+        daoClient.updateMemo(update);
+    }
+
+    /**
+     * Patch memo test valid, only the supplied field changes.
+     */
+    @Test
+    public void patchMemoTestValid() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+        daoClient.getMemo(createdMemo.getId());
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("title", "Patched title");
+        daoClient.patchMemo(createdMemo.getId(), fields);
+
+        memo = daoClient.getMemo(createdMemo.getId());
+        assertEquals("Patched title", memo.getTitle());
+        assertEquals("Some author", memo.getAuthor());
+        assertEquals("Some text", memo.getText());
+    }
+
+    /**
+     * Patch memo test with a removed field.
+     */
+    @Test
+    public void patchMemoTestWithBadInputs() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("text", null);
+
+        exception.expect(InvalidDataException.class);
+        exception.expectMessage("Memo Text cannot be null or empty.");
+        daoClient.patchMemo(createdMemo.getId(), fields);
+    }
+
+    /**
+     * Patch memo test with a field that cannot be patched.
+     */
+    @Test
+    public void patchMemoTestWithUnknownField() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("created", "2015-01-01");
+
+        exception.expect(InvalidDataException.class);
+        daoClient.patchMemo(1L, fields);
+    }
+
+    /**
+     * Patch memo test with invalid id.
+     */
+    @Test
+    public void patchMemoTestWithInvalid() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("title", "Patched title");
+
+        exception.expect(DataNotFoundException.class);
+        daoClient.patchMemo(1L, fields);
+    }
+
+    /**
+     * DAO client calls are timed and counted by outcome.
+     */
+    @Test
+    public void daoLatencyRecorded() {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Memo createdMemo = daoClient.createMemo(memo);
+        daoClient.getMemo(createdMemo.getId());
+        try {
+            daoClient.getMemo(createdMemo.getId() + 1);
+        } catch (DataNotFoundException ex) {
+            assertNotNull(ex.getMessage());
+        }
+        daoClient.getMemosForPage(0, 10, false);
+
+        latencyRegistry.roll();
+
+        Map<String, LatencySnapshot> snapshots = latencyRegistry.daoSnapshots();
+        LatencySnapshot getMemo = snapshots.get("DAOClient.getMemo");
+        assertNotNull(getMemo);
+        assertEquals(2, getMemo.getCount());
+        assertEquals(Long.valueOf(1), getMemo.getStatuses().get("200"));
+        assertEquals(Long.valueOf(1), getMemo.getStatuses().get("404"));
+        assertEquals(0.5, getMemo.getErrorRate(), 0.0);
+        assertTrue(getMemo.getMax() >= getMemo.getP50());
+        assertNotNull(snapshots.get("DAOClient.createMemo"));
+        assertNotNull(snapshots.get("DAOClient.getMemosForPage/3"));
+    }
+
+    /**
+     * Load test of the pool: as many concurrent readers as the database executor
+     * has threads never find the pool exhausted, and no borrow times out.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void poolDoesNotQueueUnderReadConcurrency() throws Exception {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Long id = daoClient.createMemo(memo).getId();
+        latencyRegistry.roll();
+
+        int reads = 50;
+        ExecutorService readers = Executors.newFixedThreadPool(readerCount);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> done = new ArrayList<>();
+        for (int i = 0; i < readerCount; i++) {
+            done.add(readers.submit(() -> {
+                start.await();
+                for (int j = 0; j < reads; j++) {
+                    daoClient.getMemoVersion(id);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> reader : done) {
+            reader.get();
+        }
+        readers.shutdown();
+        latencyRegistry.roll();
+
+        assertEquals(0, dataSource.getQueuedCount());
+        assertTrue(dataSource.getMaxActive() > readerCount);
+        LatencySnapshot waits = latencyRegistry.connectionWaitSnapshot();
+        assertTrue(waits.getCount() >= readerCount * reads);
+        assertNull(waits.getStatuses().get("503"));
+        assertTrue(dataSource.getJdbcInterceptors().contains("StatementCache"));
+        assertTrue(dataSource.isTestOnBorrow());
+    }
+
+    /**
+     * A create whose batch does not commit in time fails as unavailable and leaves
+     * the queue.
+     */
+    @Test
+    public void groupCommitTimeoutTest() {
+        MemoGroupCommit groupCommit = new MemoGroupCommit(transactionManager,
+                entityManagerFactory, changeSequence, 8, 50000, 100);
+        ReflectionTestUtils.setField(groupCommit, "running", true);
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+
+        try {
+            groupCommit.create(memo);
+            fail("Create did not time out");
+        } catch (ServiceUnavailableException ex) {
+            assertTrue(ex.getMessage().contains("timed out"));
+        }
+        assertTrue(((Collection<?>) ReflectionTestUtils.getField(groupCommit, "queue"))
+                .isEmpty());
+    }
+
+    /**
+     * Concurrent creates through the group commit share their transactions; each
+     * create gets its own memo back, and the invalid one its own error.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void groupCommitTest() throws Exception {
+        int writers = 20;
+        MemoGroupCommit groupCommit = new MemoGroupCommit(transactionManager,
+                entityManagerFactory, changeSequence, 8, 50000, 30000);
+        groupCommit.afterPropertiesSet();
+
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Memo>> done = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Some author " + i);
+            if (i != 7) {
+                memo.setText("Some text " + i);
+            }
+            done.add(pool.submit(() -> {
+                start.await();
+                return groupCommit.create(memo);
+            }));
+        }
+        start.countDown();
+
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < writers; i++) {
+            try {
+                Memo created = done.get(i).get();
+                assertEquals("Some text " + i, daoClient.getMemo(created.getId()).getText());
+                ids.add(created.getId());
+            } catch (ExecutionException ex) {
+                assertEquals(7, i);
+                assertTrue(ex.getCause() instanceof InvalidDataException);
+                assertTrue(ex.getCause().getMessage().contains("Memo Text cannot be null"));
+            }
+        }
+        pool.shutdown();
+        groupCommit.destroy();
+
+        assertEquals(writers - 1, ids.size());
+        Map<String, Number> metrics = new HashMap<>();
+        for (Metric<?> metric : groupCommit.metrics()) {
+            metrics.put(metric.getName(), metric.getValue());
+        }
+        assertEquals(writers - 1L, metrics.get("memo.group-commit.memos"));
+        long batches = metrics.get("memo.group-commit.batches").longValue();
+        assertTrue(batches >= 3 && batches < writers - 1);
+    }
+
+    /**
+     * Identical concurrent reads of a memo share one load and its result; the next
+     * read after the load loads again.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void singleFlightTest() throws Exception {
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Some author");
+        memo.setText("Some text");
+        Long id = daoClient.createMemo(memo).getId();
+
+        int readers = 10;
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(readers);
+        List<Future<Memo>> done = new ArrayList<>();
+        for (int i = 0; i < readers; i++) {
+            done.add(pool.submit(() -> singleFlight.execute("memo", () -> {
+                loads.incrementAndGet();
+                long deadline = System.currentTimeMillis() + 10000;
+                while (collapsed() < readers - 1 && System.currentTimeMillis() < deadline) {
+                    Thread.yield();
+                }
+                return daoClient.getMemo(id);
+            })));
+        }
+        Memo first = done.get(0).get();
+        for (Future<Memo> read : done) {
+            assertTrue(first == read.get());
+        }
+        pool.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(readers - 1, collapsed());
+
+        exception.expect(DataNotFoundException.class);
+        singleFlight.execute("memo", () -> daoClient.getMemo(id + 1));
+    }
+
+    /**
+     * Gets the reads served by the load of another read.
+     *
+     * @return the count
+     */
+    private long collapsed() {
+        for (Metric<?> metric : singleFlight.metrics()) {
+            if ("memo.singleflight.collapsed".equals(metric.getName())) {
+                return metric.getValue().longValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The statistics are aggregated by the first refresh, then moved by the changes
+     * of the feed. Reading them does not query the database.
+     */
+    @Test
+    public void statsTest() {
+        memoStatistics.refresh();
+        List<Memo> memos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Author " + (i % 2));
+            memo.setText(StringUtils.repeat('x', 50 + i * 40));
+            memos.add(memo);
+        }
+        daoClient.createMemos(memos);
+        memoStatistics.refresh();
+
+        MemoStats stats = daoClient.getStats();
+        assertEquals(5, stats.getTotal());
+        assertEquals(Long.valueOf(3), stats.getAuthors().get("Author 0"));
+        assertEquals(Long.valueOf(2), stats.getAuthors().get("Author 1"));
+        assertEquals(Arrays.asList("0-99", "100-999", "1000-9999", "10000+"),
+                new ArrayList<>(stats.getTextSizes().keySet()));
+        assertEquals(Long.valueOf(2), stats.getTextSizes().get("0-99"));
+        assertEquals(Long.valueOf(3), stats.getTextSizes().get("100-999"));
+        assertEquals(Long.valueOf(0), stats.getTextSizes().get("10000+"));
+        assertTrue(stats.getCreateRate() > 0);
+        assertNotNull(stats.getRefreshed());
+        assertTrue(stats == daoClient.getStats());
+
+        Memo memo = new Memo();
+        memo.setTitle("Some title");
+        memo.setAuthor("Author 1");
+        memo.setText("Some text");
+        daoClient.createMemo(memo);
+        daoClient.deleteMemo(memos.get(0).getId());
+        assertEquals(5, daoClient.getStats().getTotal());
+
+        memoStatistics.refresh();
+        stats = daoClient.getStats();
+        assertEquals(5, stats.getTotal());
+        assertEquals(Long.valueOf(2), stats.getAuthors().get("Author 0"));
+        assertEquals(Arrays.asList("Author 1", "Author 0"),
+                new ArrayList<>(stats.getAuthors().keySet()));
+        assertEquals(Long.valueOf(2), stats.getTextSizes().get("0-99"));
+        assertTrue(stats.getDeleteRate() > 0);
+
+        Memo tracked = new Memo();
+        tracked.setTitle("Some title");
+        tracked.setAuthor("Author 1");
+        tracked.setText("Some text");
+        tracked = daoClient.createMemo(tracked);
+        memoStatistics.refresh();
+        assertEquals(6, daoClient.getStats().getTotal());
+
+        daoClient.patchMemo(tracked.getId(), ImmutableMap.of("author", "Author 2",
+                "text", StringUtils.repeat('x', 200)));
+        memoStatistics.refresh();
+        stats = daoClient.getStats();
+        assertEquals(6, stats.getTotal());
+        assertEquals(Long.valueOf(3), stats.getAuthors().get("Author 1"));
+        assertEquals(Long.valueOf(1), stats.getAuthors().get("Author 2"));
+        assertEquals(Long.valueOf(2), stats.getTextSizes().get("0-99"));
+        assertEquals(Long.valueOf(4), stats.getTextSizes().get("100-999"));
+        assertTrue(stats.getUpdateRate() > 0);
+
+        daoClient.deleteMemo(tracked.getId());
+        memoStatistics.refresh();
+        stats = daoClient.getStats();
+        assertEquals(5, stats.getTotal());
+        assertNull(stats.getAuthors().get("Author 2"));
+        assertEquals(Long.valueOf(3), stats.getTextSizes().get("100-999"));
+    }
+
+    /**
+     * Only a bounded number of memos is tracked; a change of one forgotten is left
+     * to the next aggregation instead of being counted twice.
+     */
+    @Test
+    public void statsTrackedBoundTest() {
+        MemoStatistics statistics = new MemoStatistics(jdbcTemplate, transactionManager,
+                changeSequence, 100, 1, Long.MAX_VALUE, 100);
+        statistics.refresh();
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Memo memo = new Memo();
+            memo.setTitle("Some title " + i);
+            memo.setAuthor("Author");
+            memo.setText("Some text");
+            ids.add(daoClient.createMemo(memo).getId());
+        }
+        statistics.refresh();
+        assertEquals(2, statistics.get().getTotal());
+
+        daoClient.patchMemo(ids.get(0), ImmutableMap.of("author", "Other author"));
+        statistics.refresh();
+        MemoStats stats = statistics.get();
+        assertEquals(2, stats.getTotal());
+        assertEquals(Long.valueOf(2), stats.getAuthors().get("Author"));
+        assertEquals(Boolean.TRUE, ReflectionTestUtils.getField(statistics, "drifted"));
+
+        ReflectionTestUtils.setField(statistics, "aggregateMillis", 0L);
+        statistics.refresh();
+        stats = statistics.get();
+        assertEquals(2, stats.getTotal());
+        assertEquals(Long.valueOf(1), stats.getAuthors().get("Author"));
+        assertEquals(Long.valueOf(1), stats.getAuthors().get("Other author"));
+    }
+
+    /**
+     * Read only transactions of the JPA transaction manager, through the lazy
+     * connection proxy of the application, are spread over two H2 replicas, round
+     * robin then to the least busy one; other transactions and the reads of a
+     * client within its read-your-writes window go to the primary.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void readsRoutedToReplicas() throws Exception {
+        org.apache.tomcat.jdbc.pool.DataSource replica1 = h2Pool("replica1");
+        org.apache.tomcat.jdbc.pool.DataSource replica2 = h2Pool("replica2");
+        ReflectionTestUtils.setField(routingDataSource, "replicas",
+                Arrays.asList(replica1, replica2));
+        try {
+            TransactionTemplate read = new TransactionTemplate(transactionManager);
+            read.setReadOnly(true);
+            TransactionTemplate write = new TransactionTemplate(transactionManager);
+
+            assertEquals("REPLICA1", database(read));
+            assertEquals("REPLICA2", database(read));
+            assertEquals("BOOTEXAMPLE", database(write));
+
+            ReflectionTestUtils.setField(routingDataSource, "selection",
+                    ReplicaRoutingDataSource.Selection.parse("least-connections"));
+            try (Connection busy = replica1.getConnection()) {
+                assertNotNull(busy);
+                assertEquals("REPLICA2", database(read));
+            }
+
+            readYourWrites.wrote();
+            assertEquals("BOOTEXAMPLE", database(read));
+        } finally {
+            replica1.close();
+            replica2.close();
+        }
+    }
+
+    /**
+     * A memo read from a lagging replica is not cached; within the read-your-writes
+     * window the memo is read from the primary, and that read is cached.
+     */
+    @Test
+    public void replicaReadsNotCachedTest() {
+        Long id = 1L;
+        String insert = "INSERT INTO MEMOS (ID, TITLE, AUTHOR, TEXT, ACTIVE, CREATED,"
+                + " UPDATED, VERSION, CHANGE_SEQ) VALUES (?, ?, 'Some author',"
+                + " 'Some text', TRUE, NOW(), NOW(), 0, 0)";
+        jdbcTemplate.update(insert, id, "Some title");
+
+        org.apache.tomcat.jdbc.pool.DataSource replica = h2Pool("lagging");
+        jdbcTemplate.execute("SCRIPT NODATA TO 'target/memos-schema.sql' TABLE MEMOS");
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        replicaJdbc.execute("RUNSCRIPT FROM 'target/memos-schema.sql'");
+        replicaJdbc.update(insert, id, "Lagging title");
+        ReflectionTestUtils.setField(routingDataSource, "replicas",
+                Arrays.asList((javax.sql.DataSource) replica));
+        try {
+            assertEquals("Lagging title", daoClient.getMemo(id).getTitle());
+            assertNull(memoCache.get(id));
+            assertEquals("Lagging title",
+                    daoClient.getMemos(Arrays.asList(id)).get(0).getMemo().getTitle());
+            assertNull(memoCache.get(id));
+
+            readYourWrites.wrote();
+            assertEquals("Some title", daoClient.getMemo(id).getTitle());
+            assertEquals("Some title", memoCache.get(id).getTitle());
+            assertEquals("Some title",
+                    daoClient.getMemos(Arrays.asList(id)).get(0).getMemo().getTitle());
+        } finally {
+            replica.close();
+        }
+    }
+
+    /**
+     * The read-your-writes window travels in a cookie set by the write: requests
+     * carrying it read from the primary, other clients of the same address do not.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void readYourWritesCookieTest() throws Exception {
+        ReadYourWrites window = new ReadYourWrites(60000L, "");
+        MockHttpServletRequest writeRequest = new MockHttpServletRequest();
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        window.doFilter(writeRequest, writeResponse, (request, response) -> {
+            assertFalse(window.isOpen());
+            window.wrote();
+            assertTrue(window.isOpen());
+        });
+        Cookie cookie = writeResponse.getCookie(ReadYourWrites.COOKIE);
+        assertNotNull(cookie);
+
+        List<Callable<Boolean>> reads = new ArrayList<>();
+        MockHttpServletRequest withCookie = new MockHttpServletRequest();
+        withCookie.setCookies(cookie);
+        window.doFilter(withCookie, new MockHttpServletResponse(),
+                (request, response) -> reads.add(window.bind(window::isOpen)));
+        window.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(),
+                (request, response) -> reads.add(window.bind(window::isOpen)));
+        assertTrue(reads.get(0).call());
+        assertFalse(reads.get(1).call());
+        assertFalse(window.isOpen());
+    }
+
+    /**
+     * A cookie is honoured only with the signature of the shared secret, and holds
+     * the reads on the primary at most for one window; a forged one, one in the
+     * past or one that does not parse is ignored.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void readYourWritesForgedCookieTest() throws Exception {
+        ReadYourWrites longer = new ReadYourWrites(60000L, "shared");
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        longer.doFilter(new MockHttpServletRequest(), writeResponse,
+                (request, response) -> longer.wrote());
+        String signed = writeResponse.getCookie(ReadYourWrites.COOKIE).getValue();
+        String signature = signed.substring(signed.indexOf('.'));
+
+        ReadYourWrites window = new ReadYourWrites(200L, "shared");
+        List<Callable<Boolean>> reads = new ArrayList<>();
+        for (String value : Arrays.asList(signed, Long.toString(Long.MAX_VALUE),
+                Long.MAX_VALUE + signature, "1" + signature, "soon")) {
+            MockHttpServletRequest forged = new MockHttpServletRequest();
+            forged.setCookies(new Cookie(ReadYourWrites.COOKIE, value));
+            window.doFilter(forged, new MockHttpServletResponse(),
+                    (request, response) -> reads.add(window.bind(window::isOpen)));
+        }
+        assertTrue(reads.get(0).call());
+        for (Callable<Boolean> read : reads.subList(1, reads.size())) {
+            assertFalse(read.call());
+        }
+        Thread.sleep(400L);
+        assertFalse(reads.get(0).call());
+
+        ReadYourWrites other = new ReadYourWrites(60000L, "other");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(ReadYourWrites.COOKIE, signed));
+        other.doFilter(request, new MockHttpServletResponse(),
+                (req, response) -> assertFalse(other.isOpen()));
+    }
+
+    /**
+     * Build the pool of an in-memory H2 database.
+     *
+     * @param name the database name
+     * @return the pool
+     */
+    private static org.apache.tomcat.jdbc.pool.DataSource h2Pool(final String name) {
+        org.apache.tomcat.jdbc.pool.DataSource pool =
+                new org.apache.tomcat.jdbc.pool.DataSource();
+        pool.setDriverClassName("org.h2.Driver");
+        pool.setUrl("jdbc:h2:mem:" + name);
+        return pool;
+    }
+
+    /**
+     * Name the database a transaction of the JPA transaction manager runs on.
+     *
+     * @param transaction the transaction
+     * @return the database name
+     */
+    private String database(final TransactionTemplate transaction) {
+        EntityManager entityManager =
+                SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        return transaction.execute(status -> (String) entityManager
+                .createNativeQuery("SELECT DATABASE()").getSingleResult());
+    }
 }
@@ -1,2 +1,2 @@
 DELETE FROM MEMOS;
-ALTER SEQUENCE serial RESTART WITH 1;
\ No newline at end of file
+ALTER SEQUENCE memos_id_seq RESTART WITH 1;
\ No newline at end of file